@@ -10,6 +10,7 @@ import android.view.Menu;
 import android.view.MenuItem;
 
 import com.wiikzz.library.refresh.RefreshLayout;
+import com.wiikzz.library.refresh.RefreshTicket;
 
 public class MainActivity extends AppCompatActivity {
     RefreshLayout refreshLayout;
@@ -35,32 +36,42 @@ public class MainActivity extends AppCompatActivity {
         if(refreshLayout != null) {
             refreshLayout.setDrawType(RefreshLayout.RefreshDrawType.FOLLOW);
             refreshLayout.setHeader(new RefreshHeader(this));
-            refreshLayout.setFooter(new RefreshFooter(this));
+            refreshLayout.setFooter(new RefreshFooter(this), RefreshLayout.HandlerInflateMode.IDLE);
             refreshLayout.setRefreshListener(new RefreshLayout.RefreshListener() {
                 @Override
-                public void onRefreshEvent() {
-                    loadData();
+                public void onRefreshEvent(RefreshTicket ticket) {
+                    // 两个并行的请求都结束后才弹回
+                    loadData(ticket.retain(), 1500L);
+                    loadData(ticket, 2500L);
                 }
 
                 @Override
-                public void onLoadMoreEvent() {
-                    loadData();
+                public void onLoadMoreEvent(RefreshTicket ticket) {
+                    loadData(ticket, 2500L);
+                }
+
+                @Override
+                public void onRefreshTimeout(boolean loadMore) {
+                    Snackbar.make(refreshLayout, loadMore ? "加载超时" : "刷新超时", Snackbar.LENGTH_SHORT).show();
                 }
             });
+            refreshLayout.setRefreshTimeout(10000L);
+            // 距上次刷新超过5分钟时, 进入页面自动刷新
+            refreshLayout.setAutoRefresh("main", 5 * 60 * 1000L);
         }
     }
 
-    private void loadData() {
+    private void loadData(final RefreshTicket ticket, final long duration) {
         new Thread(new Runnable() {
             @Override
             public void run() {
                 try {
-                    Thread.sleep(2500L);
+                    Thread.sleep(duration);
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }
 
-                refreshLayout.onRefreshComplete();
+                ticket.complete();
             }
         }).start();
     }
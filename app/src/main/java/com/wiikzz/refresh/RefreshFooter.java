@@ -18,7 +18,7 @@ import com.wiikzz.library.refresh.RefreshLayout;
  * Created by wiikii on 16/9/12.
  * Copyright (C) 2014 wiikii. All rights reserved.
  */
-public class RefreshFooter implements RefreshLayout.RefreshHandler {
+public class RefreshFooter implements RefreshLayout.RefreshHandler, RefreshLayout.RefreshFailedHandler {
     private Context mContext;
     private int mRotationAnimResourceId;
     private View mView;
@@ -91,4 +91,9 @@ public class RefreshFooter implements RefreshLayout.RefreshHandler {
     public void onDragFinishAnim() {
         mProgressBar.clearAnimation();
     }
+
+    @Override
+    public void onRefreshFailed() {
+        mProgressBar.clearAnimation();
+    }
 }
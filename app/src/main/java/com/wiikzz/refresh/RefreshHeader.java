@@ -2,6 +2,7 @@ package com.wiikzz.refresh;
 
 import android.content.Context;
 import android.support.v4.content.ContextCompat;
+import android.text.format.DateFormat;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -17,7 +18,8 @@ import com.wiikzz.library.refresh.RefreshLayout;
  * Created by wiikii on 16/9/12.
  * Copyright (C) 2014 wiikii. All rights reserved.
  */
-public class RefreshHeader implements RefreshLayout.RefreshHandler {
+public class RefreshHeader implements RefreshLayout.RefreshHandler,
+        RefreshLayout.RefreshFailedHandler, RefreshLayout.LastRefreshTimeHandler {
     private Context context;
     private View mView;
 
@@ -26,6 +28,7 @@ public class RefreshHeader implements RefreshLayout.RefreshHandler {
     private RotateAnimation mRotateDownAnim;
 
     private TextView headerTitle;
+    private TextView headerTime;
     private ImageView headerArrow;
     private ProgressBar headerProgressbar;
     private View frame;
@@ -45,6 +48,7 @@ public class RefreshHeader implements RefreshLayout.RefreshHandler {
         if(mView == null) {
             mView = LayoutInflater.from(context).inflate(R.layout.rl_pull_refresh_header, parentView, true);
             headerTitle = (TextView) mView.findViewById(R.id.rl_pr_header_text);
+            headerTime = (TextView) mView.findViewById(R.id.rl_pr_header_time);
             headerArrow = (ImageView) mView.findViewById(R.id.rl_pr_header_arrow);
             headerProgressbar = (ProgressBar) mView.findViewById(R.id.rl_pr_header_progressbar);
             frame = mView.findViewById(R.id.rl_pr_header_frame);
@@ -106,4 +110,20 @@ public class RefreshHeader implements RefreshLayout.RefreshHandler {
         headerArrow.setVisibility(View.VISIBLE);
         headerProgressbar.setVisibility(View.INVISIBLE);
     }
+
+    @Override
+    public void onRefreshFailed() {
+        headerTitle.setText("刷新失败");
+        headerProgressbar.setVisibility(View.INVISIBLE);
+    }
+
+    @Override
+    public void onLastRefreshTime(long timeMillis) {
+        if (timeMillis <= 0) {
+            headerTime.setVisibility(View.GONE);
+        } else {
+            headerTime.setText("上次更新 " + DateFormat.format("MM-dd kk:mm", timeMillis));
+            headerTime.setVisibility(View.VISIBLE);
+        }
+    }
 }
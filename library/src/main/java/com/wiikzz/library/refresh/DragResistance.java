@@ -0,0 +1,97 @@
+package com.wiikzz.library.refresh;
+
+/**
+ * Created by wiikii on 16/9/21.
+ * Copyright (C) 2014 wiikii. All rights reserved.
+ *
+ * 下拉或上拉时的阻尼曲线, 手指移动的距离乘以阻尼系数为header/footer实际拉出的距离.
+ * 每次移动都会调用, 实现中不要创建对象.
+ */
+public interface DragResistance {
+
+    /**
+     * 获取当前的阻尼系数
+     * @param dragDistance 当前已拉出的距离, 0到maxDistance之间
+     * @param maxDistance 允许拉出的最大距离
+     * @return 0到1之间的系数
+     */
+    float getResistance(float dragDistance, int maxDistance);
+
+    /**
+     * 线性阻尼: 系数从ratio线性减小到0
+     */
+    class Linear implements DragResistance {
+        private final float mRatio;
+
+        public Linear() {
+            this(0.5f);
+        }
+
+        /**
+         * @param ratio 开始拉动时的系数
+         */
+        public Linear(float ratio) {
+            mRatio = ratio;
+        }
+
+        @Override
+        public float getResistance(float dragDistance, int maxDistance) {
+            return mRatio * (1f - dragDistance / maxDistance);
+        }
+    }
+
+    /**
+     * 指数阻尼: 系数从ratio按指数衰减
+     */
+    class Exponential implements DragResistance {
+        private final float mRatio;
+        private final float mDecay;
+
+        /**
+         * @param ratio 开始拉动时的系数
+         * @param decay 衰减速度, 拉到最大距离时系数为ratio * e^(-decay)
+         */
+        public Exponential(float ratio, float decay) {
+            mRatio = ratio;
+            mDecay = decay;
+        }
+
+        @Override
+        public float getResistance(float dragDistance, int maxDistance) {
+            return mRatio * (float) Math.exp(-mDecay * dragDistance / maxDistance);
+        }
+    }
+
+    /**
+     * 查表阻尼: 在0到最大距离之间均匀分布的系数, 中间按线性插值
+     */
+    class LookupTable implements DragResistance {
+        private final float[] mTable;
+
+        /**
+         * @param table 至少两个系数, 第一个对应拉出距离为0, 最后一个对应最大距离
+         */
+        public LookupTable(float[] table) {
+            if(table == null || table.length < 2) {
+                throw new IllegalArgumentException("LookupTable needs at least two values");
+            }
+            mTable = table.clone();
+        }
+
+        @Override
+        public float getResistance(float dragDistance, int maxDistance) {
+            float position = dragDistance / maxDistance * (mTable.length - 1);
+            if(position <= 0) {
+                return mTable[0];
+            }
+
+            int index = (int) position;
+            if(index >= mTable.length - 1) {
+                return mTable[mTable.length - 1];
+            }
+
+            float fraction = position - index;
+            return mTable[index] + (mTable[index + 1] - mTable[index]) * fraction;
+        }
+    }
+}
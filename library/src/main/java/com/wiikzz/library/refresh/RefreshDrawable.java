@@ -0,0 +1,83 @@
+package com.wiikzz.library.refresh;
+
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Created by wiikii on 16/9/24.
+ * Copyright (C) 2014 wiikii. All rights reserved.
+ *
+ * 不需要View的header/footer, 由RefreshLayout在dispatchDraw中直接绘制露出的区域.
+ * 绘制时不要创建对象, 需要动画时根据drawingTime计算并在draw中返回true.
+ */
+public abstract class RefreshDrawable implements RefreshLayout.RefreshHandler, RefreshLayout.RefreshFailedHandler {
+
+    /**
+     * 没有View, 返回null
+     */
+    @Override
+    public final View initHandlerView(ViewGroup parentView) {
+        return null;
+    }
+
+    /**
+     * 获取header/footer的高度, 拖动的最小距离及回弹距离未设置时使用
+     */
+    public abstract int getIntrinsicHeight();
+
+    /**
+     * 绘制露出的区域, canvas的原点位于该区域的左上角
+     * @param width 区域宽度
+     * @param exposedHeight 露出的高度
+     * @param footer true表示作为footer绘制
+     * @param drawingTime 当前帧的时间, 用于计算动画
+     * @return 需要继续绘制下一帧时返回true
+     */
+    public abstract boolean draw(Canvas canvas, int width, int exposedHeight, boolean footer, long drawingTime);
+
+    @Override
+    public int getDragMinDistance() {
+        return 0;
+    }
+
+    @Override
+    public int getDragMaxDistance() {
+        return 0;
+    }
+
+    @Override
+    public int getSpringDistance() {
+        return 0;
+    }
+
+    @Override
+    public void onDragReady() {
+
+    }
+
+    @Override
+    public void onDragEvent(int distance) {
+
+    }
+
+    @Override
+    public void onDragCriticalPoint(boolean pullDown) {
+
+    }
+
+    @Override
+    public void onDragStartAnim() {
+
+    }
+
+    @Override
+    public void onDragFinishAnim() {
+
+    }
+
+    @Override
+    public void onRefreshFailed() {
+
+    }
+}
@@ -1,23 +1,44 @@
 package com.wiikzz.library.refresh;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.annotation.NonNull;
+import android.support.v4.os.TraceCompat;
 import android.support.v4.view.MotionEventCompat;
+import android.support.v4.view.NestedScrollingChild;
+import android.support.v4.view.NestedScrollingChildHelper;
+import android.support.v4.view.NestedScrollingParent;
+import android.support.v4.view.NestedScrollingParentHelper;
+import android.support.v4.view.ScrollingView;
+import android.support.v4.view.VelocityTrackerCompat;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
-import android.view.animation.Animation;
-import android.view.animation.TranslateAnimation;
+import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by wiikii on 16/9/13.
  * Copyright (C) 2014 wiikii. All rights reserved.
  */
-public class RefreshLayout extends ViewGroup {
+public class RefreshLayout extends ViewGroup implements NestedScrollingParent, NestedScrollingChild {
 
     private static final int MAX_DRAG_DEFAULT_DISTANCE = 600;
+    private static final int MAX_FLING_OVER_DISTANCE = 40; // 松手快速滑动时允许越过目标位置的最大距离
+    private static final float MIN_PUSH_BACK_RESISTANCE = 0.1f;
 
     private View mContentView; // 包含的唯一子View(Header与Footer除外)
     private RefreshHandler mHeaderHandler;
@@ -32,10 +53,107 @@ public class RefreshLayout extends ViewGroup {
     private int sFooterMinDragDistance;
     private int sFooterSpringDistance;
 
-    private int mCallListenerType = 0;// 0:无刷新操作; 1:下拉刷新操作; 2:上拉加载更多操作
+    private RefreshState mRefreshState = RefreshState.IDLE;
+    private RefreshState mSettlingFrom = RefreshState.IDLE; // 进入SETTLING前的状态, 弹回后据此通知header或footer
+    private int mDragSide; // 拖动中露出的一侧: 1:header; -1:footer; 0:无
+    private boolean mHasNotifiedRefresh; // 本次刷新或加载是否已经通知RefreshListener
+    private boolean mHasPendingComplete; // 已经请求完成, 等待回弹动画到达刷新位置后再弹回
+    private boolean mAttached; // 是否在窗口中, 不在窗口中时不会执行动画
+    private int mRefreshGeneration; // 每次开始刷新或加载时加1, 用来识别过期的RefreshTicket
+    private static final int COMPLETE_NONE = -1;
+    private static final int COMPLETE_ANY = Integer.MAX_VALUE; // onRefreshComplete(): 完成当前的刷新
+    // 等待在主线程处理的完成请求, 多个请求合并为其中最新的一次
+    private final AtomicInteger mPendingCompleteGeneration = new AtomicInteger(COMPLETE_NONE);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // 预加载: 内容快滚动到底部时提前通知加载更多
+    private int mPrefetchDistance; // 距离底部的像素, 小于等于0不按距离预加载
+    private int mPrefetchItemCount; // 距离底部的条目数, 小于等于0不按条目预加载
+    private RemainingItemCounter mRemainingItemCounter;
+    private boolean mPrefetchInFlight; // 预加载正在进行, 期间不再重复触发
+    private int mPrefetchGeneration;
+    private boolean mLoadingFollowsPrefetch; // 上拉加载时预加载已在进行, 等待预加载完成即可
+    private boolean mNoMoreData; // 没有更多数据, 不再预加载或上拉加载
+    private boolean mDispatchRefreshOnRelease; // 松手时立即通知RefreshListener, 不等待回弹动画结束
+
+    // 拖动及回弹过程中使用硬件层, 回到IDLE时恢复
+    private static final int LAYER_TYPE_UNSET = -1;
+    private boolean mHandlerLayerEnabled;
+    private boolean mContentLayerEnabled;
+    private boolean mDragLayersApplied;
+    private int mHeaderLayerType = LAYER_TYPE_UNSET; // 设置硬件层之前的类型, 用于恢复
+    private int mFooterLayerType = LAYER_TYPE_UNSET;
+    private int mContentLayerType = LAYER_TYPE_UNSET;
+    private int mHeaderDirtyFrames; // 连续自身重绘的帧数
+    private int mFooterDirtyFrames;
+    private int mContentDirtyFrames;
+
+    // 拖动及回弹过程中的帧耗时统计
+    private RefreshMetricsListener mMetricsListener;
+    private final RefreshMetrics mMetrics = new RefreshMetrics();
+    private boolean mMetricsFrameScheduled;
+    private long mLastMetricsFrameTime;
+    private static final int START_REFRESH_NONE = -1;
+    // 其他线程调用startRefresh()时等待在主线程处理的动画时长
+    private final AtomicInteger mPendingStartRefreshDuration = new AtomicInteger(START_REFRESH_NONE);
+    private int mDeferredStartRefreshDuration = START_REFRESH_NONE; // 还未测量header时, 等待布局后再移动到刷新位置
+
+    // 记录上次刷新成功的时间, 数据未过期时不自动刷新
+    private static final String REFRESH_TIME_PREFERENCES = "refresh_layout_time";
+    private static final int AUTO_REFRESH_DURATION = 300;
+    private String mRefreshTimeKey;
+    private long mRefreshTimeToLive;
+    private long mLastRefreshTime; // 0表示从未刷新
+    private boolean mRefreshTimeLoaded; // 保存的时间已经读取
+    // 已经读取或保存过的刷新时间, 相同key的RefreshLayout共享, 只在主线程访问
+    private static final Map<String, Long> sRefreshTimes = new HashMap<String, Long>();
+
+    private long mRefreshTimeout; // 刷新或加载的超时时间(毫秒), 小于等于0不超时
+    private RefreshStateListener mRefreshStateListener;
+    // systrace中的section名称
+    private static final String TRACE_MEASURE = "RefreshLayout#onMeasure";
+    private static final String TRACE_LAYOUT = "RefreshLayout#onLayout";
+    private static final String TRACE_COMPUTE_SCROLL = "RefreshLayout#computeScroll";
+    private static final String TRACE_CONTROL_MOVE = "RefreshLayout#shouldControlMoveEvent";
+    private static final String TRACE_MOVE = "RefreshLayout#executeMoveAction";
+    private static final String TRACE_NOTIFY_DRAG = "RefreshLayout#notifyDragEvent";
+    private static final String TRACE_NOTIFY_REFRESH = "RefreshLayout#notifyRefreshEvent";
+    private static final String TRACE_NOTIFY_FINISH = "RefreshLayout#notifyFinishEvent";
+    private static final String TRACE_RESET = "RefreshLayout#executeResetAction";
+    private static final String TRACE_START_REFRESH = "RefreshLayout#startRefresh";
+    private static final String TRACE_COMPLETE = "RefreshLayout#onRefreshComplete";
+    private static boolean sTraceEnabled;
+
+    private static final int SCROLL_END_NONE = 0;
+    private static final int SCROLL_END_FINISH = 1; // 弹回初始位置后通知header/footer
+    private static final int SCROLL_END_REFRESH = 2; // 到达刷新位置后通知RefreshListener
+    private static final int SCROLL_END_COMPLETE = 3; // 到达刷新位置后再处理已经完成的刷新
+    private int mScrollEndAction = SCROLL_END_NONE;
     private RefreshListener mRefreshListener;
 
+    private DragResistance mHeaderDragResistance = new DragResistance.Linear();
+    private DragResistance mFooterDragResistance = new DragResistance.Linear();
+
     private OverScroller mScroller;
+    private SpringScroller mSpringScroller; // 不为空时, 回弹及刷新动画使用弹簧动画
+    private int mMinimumFlingVelocity;
+    private int mMaximumFlingVelocity;
+    private int mTouchSlop;
+
+    private NestedScrollingParentHelper mNestedScrollingParentHelper;
+    private NestedScrollingChildHelper mNestedScrollingChildHelper;
+    private final int[] mParentScrollConsumed = new int[2];
+    private final int[] mParentOffsetInWindow = new int[2];
+    private boolean mNestedScrollInProgress;
+
+    private static final int EDGE_ABSORB_NONE = 0;
+    private static final int EDGE_ABSORB_TRACKING = 1; // 跟踪内容View的fling, 等待其到达边缘
+    private static final int EDGE_ABSORB_BOUNCING = 2; // 内容View到达边缘, 剩余速度转为header/footer的回弹
+    private boolean mEdgeAbsorbEnabled;
+    private boolean mEdgeAbsorbLoadMoreEnabled;
+    private int mEdgeAbsorbState = EDGE_ABSORB_NONE;
+    private boolean mEdgeAbsorbLoadMorePosted;
+    private int mEdgeAbsorbDirection;
 
     private RefreshDrawType mDrawType = RefreshDrawType.FOLLOW;
 
@@ -44,6 +162,22 @@ public class RefreshLayout extends ViewGroup {
         FOLLOW   // 跟随
     }
 
+    public enum HandlerInflateMode {
+        IMMEDIATE, // 设置时立即创建
+        ON_DEMAND, // 第一次拖动或开始刷新时创建
+        IDLE       // 主线程空闲时提前创建, 之前需要时同ON_DEMAND
+    }
+
+    public enum RefreshState {
+        IDLE,            // 初始状态
+        DRAGGING_HEADER, // 正在下拉, 未超过临界点
+        DRAGGING_FOOTER, // 正在上拉, 未超过临界点
+        ARMED,           // 拉动超过临界点, 松开即刷新或加载更多
+        REFRESHING,      // 正在刷新
+        LOADING,         // 正在加载更多
+        SETTLING         // 正在弹回初始位置
+    }
+
     public RefreshLayout(Context context) {
         super(context);
         initRefreshLayout(context, null);
@@ -56,6 +190,15 @@ public class RefreshLayout extends ViewGroup {
 
     private void initRefreshLayout(Context context, AttributeSet attrs) {
         mScroller = new OverScroller(context);
+
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        mMinimumFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaximumFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+        mTouchSlop = configuration.getScaledTouchSlop();
+
+        mNestedScrollingParentHelper = new NestedScrollingParentHelper(this);
+        mNestedScrollingChildHelper = new NestedScrollingChildHelper(this);
+        setNestedScrollingEnabled(true);
     }
 
     @Override
@@ -83,29 +226,73 @@ public class RefreshLayout extends ViewGroup {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        beginTraceSection(TRACE_MEASURE);
+        mLastWidthMeasureSpec = widthMeasureSpec;
+        mLastHeightMeasureSpec = heightMeasureSpec;
+
         // measure children
-        measureChildren(widthMeasureSpec, heightMeasureSpec);
+        for(int index = 0; index < getChildCount(); index++) {
+            View child = getChildAt(index);
+            if(child.getVisibility() == GONE) {
+                continue;
+            }
+            measureChild(child, widthMeasureSpec, heightMeasureSpec);
+        }
+        resolveDragDistances();
+
+        // measure self
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        endTraceSection();
+    }
 
-        if (mHeaderHandler != null && mHeaderView != null){
+    // 根据header/footer的设置及测量结果计算拖动距离, 只在高度或设置变化时重新计算
+    private void resolveDragDistances() {
+        int headerHeight = getHandlerHeight(mHeaderView, mHeaderDrawable);
+        if (isHeaderReady() && (mDragDistancesDirty || headerHeight != mResolvedHeaderHeight)){
+            mResolvedHeaderHeight = headerHeight;
             int maxDistance = mHeaderHandler.getDragMaxDistance();
             sHeaderMaxDragDistance = maxDistance > 0 ? maxDistance : MAX_DRAG_DEFAULT_DISTANCE;
             int minDistance = mHeaderHandler.getDragMinDistance();
-            sHeaderMinDragDistance = minDistance > 0 ? minDistance : mHeaderView.getMeasuredHeight();
+            sHeaderMinDragDistance = minDistance > 0 ? minDistance : headerHeight;
             int springDistance = mHeaderHandler.getSpringDistance();
             sHeaderSpringDistance = springDistance > 0 ? springDistance : sHeaderMinDragDistance;
         }
 
-        if (mFooterHandler != null && mFooterView != null) {
+        int footerHeight = getHandlerHeight(mFooterView, mFooterDrawable);
+        if (isFooterReady() && (mDragDistancesDirty || footerHeight != mResolvedFooterHeight)) {
+            mResolvedFooterHeight = footerHeight;
             int maxDistance = mFooterHandler.getDragMaxDistance();
             sFooterMaxDragDistance = maxDistance > 0 ? maxDistance : MAX_DRAG_DEFAULT_DISTANCE;
             int minDistance = mFooterHandler.getDragMinDistance();
-            sFooterMinDragDistance = minDistance > 0 ? minDistance : mFooterView.getMeasuredHeight();
+            sFooterMinDragDistance = minDistance > 0 ? minDistance : footerHeight;
             int springDistance = mFooterHandler.getSpringDistance();
             sFooterSpringDistance = springDistance > 0 ? springDistance : sFooterMinDragDistance;
         }
+        mDragDistancesDirty = false;
+    }
+
+    private static int getHandlerHeight(View handlerView, RefreshDrawable drawable) {
+        if(handlerView != null) {
+            return handlerView.getMeasuredHeight();
+        }
+        return drawable != null ? drawable.getIntrinsicHeight() : 0;
+    }
 
-        // measure self
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    // header的View已经创建, 或者header是RefreshDrawable
+    private boolean isHeaderReady() {
+        return mHeaderHandler != null && (mHeaderView != null || mHeaderDrawable != null);
+    }
+
+    private boolean isFooterReady() {
+        return mFooterHandler != null && (mFooterView != null || mFooterDrawable != null);
+    }
+
+    /**
+     * header/footer返回的拖动距离发生变化时调用, 下次测量时重新获取
+     */
+    public void invalidateDragDistances() {
+        mDragDistancesDirty = true;
+        requestLayout();
     }
 
     @Override
@@ -114,13 +301,29 @@ public class RefreshLayout extends ViewGroup {
             return;
         }
 
+        beginTraceSection(TRACE_LAYOUT);
         // reset some attrs
         int width = r - l;
         int height = b - t;
-        l = 0;
-        t = 0;
-        r = width;
-        b = height;
+        layoutHandlerViews(width, height);
+
+        // OVERLAP模式下保留内容View当前的拖动偏移
+        int contentTop = mDrawType == RefreshDrawType.OVERLAP ? mContentView.getTop() : 0;
+        mContentView.layout(0, contentTop, mContentView.getMeasuredWidth(), contentTop + mContentView.getMeasuredHeight());
+
+        if(mDeferredStartRefreshDuration != START_REFRESH_NONE && canStartRefreshNow()) {
+            // 不在布局过程中回调header及RefreshListener
+            removeCallbacks(mDeferredStartRefreshRunnable);
+            post(mDeferredStartRefreshRunnable);
+        }
+        endTraceSection();
+    }
+
+    private void layoutHandlerViews(int width, int height) {
+        int l = 0;
+        int t = 0;
+        int r = width;
+        int b = height;
 
         if(mHeaderHandler != null && mHeaderView != null) {
             switch (mDrawType) {
@@ -145,9 +348,172 @@ public class RefreshLayout extends ViewGroup {
                     break;
             }
         }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        // RefreshDrawable在子View之前绘制, OVERLAP模式下位于内容View之下
+        if(mContentView != null && (mHeaderDrawable != null || mFooterDrawable != null)) {
+            drawRefreshDrawable(canvas);
+        }
+        super.dispatchDraw(canvas);
+    }
+
+    private void applyDragLayers() {
+        if(mDragLayersApplied || (!mHandlerLayerEnabled && !mContentLayerEnabled)) {
+            return;
+        }
+
+        mDragLayersApplied = true;
+        if(mHandlerLayerEnabled) {
+            mHeaderDirtyFrames = 0;
+            mFooterDirtyFrames = 0;
+            if(!isSelfInvalidating(mHeaderView)) {
+                mHeaderLayerType = setHardwareLayer(mHeaderView);
+            }
+            if(!isSelfInvalidating(mFooterView)) {
+                mFooterLayerType = setHardwareLayer(mFooterView);
+            }
+        }
+        if(mContentLayerEnabled && !isSelfInvalidating(mContentView)) {
+            mContentDirtyFrames = 0;
+            mContentLayerType = setHardwareLayer(mContentView);
+        }
+    }
+
+    private void restoreDragLayers() {
+        if(!mDragLayersApplied) {
+            return;
+        }
+
+        mDragLayersApplied = false;
+        mHeaderLayerType = restoreLayerType(mHeaderView, mHeaderLayerType);
+        mFooterLayerType = restoreLayerType(mFooterView, mFooterLayerType);
+        mContentLayerType = restoreLayerType(mContentView, mContentLayerType);
+    }
+
+    // 在绘制前决定是否去掉硬件层, 绘制过程中改变LayerType会使正在绘制的View失效
+    private final ViewTreeObserver.OnPreDrawListener mOnPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            if(mDragLayersApplied) {
+                checkDragLayer(mContentView);
+                checkDragLayer(mHeaderView);
+                checkDragLayer(mFooterView);
+            }
+            return true;
+        }
+    };
+
+    // 子View自身在不断重绘(如列表动画, 进度条)时, 硬件层每帧都要重新绘制, 不如直接绘制
+    private void checkDragLayer(View child) {
+        if(child == null) {
+            return;
+        }
+
+        if(child == mContentView && mContentLayerType != LAYER_TYPE_UNSET) {
+            mContentDirtyFrames = isSelfInvalidating(child) ? mContentDirtyFrames + 1 : 0;
+            if(mContentDirtyFrames >= 2) {
+                mContentLayerType = restoreLayerType(child, mContentLayerType);
+            }
+        } else if(child == mHeaderView && mHeaderLayerType != LAYER_TYPE_UNSET) {
+            mHeaderDirtyFrames = isSelfInvalidating(child) ? mHeaderDirtyFrames + 1 : 0;
+            if(mHeaderDirtyFrames >= 2) {
+                mHeaderLayerType = restoreLayerType(child, mHeaderLayerType);
+            }
+        } else if(child == mFooterView && mFooterLayerType != LAYER_TYPE_UNSET) {
+            mFooterDirtyFrames = isSelfInvalidating(child) ? mFooterDirtyFrames + 1 : 0;
+            if(mFooterDirtyFrames >= 2) {
+                mFooterLayerType = restoreLayerType(child, mFooterLayerType);
+            }
+        }
+    }
+
+    private static boolean isSelfInvalidating(View view) {
+        if(view == null) {
+            return false;
+        }
+        if(view.getAnimation() != null) {
+            return true;
+        }
+        // 移动内容View只改变位置, 不会使其需要重绘
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && view.isDirty();
+    }
+
+    // 设置硬件层并返回原来的类型, 未设置时返回LAYER_TYPE_UNSET
+    private static int setHardwareLayer(View view) {
+        if(view == null || view.getVisibility() != VISIBLE) {
+            return LAYER_TYPE_UNSET;
+        }
+
+        int layerType = ViewCompat.getLayerType(view);
+        if(layerType == ViewCompat.LAYER_TYPE_HARDWARE) {
+            return LAYER_TYPE_UNSET;
+        }
+        ViewCompat.setLayerType(view, ViewCompat.LAYER_TYPE_HARDWARE, null);
+        return layerType;
+    }
+
+    private static int restoreLayerType(View view, int layerType) {
+        if(view != null && layerType != LAYER_TYPE_UNSET) {
+            ViewCompat.setLayerType(view, layerType, null);
+        }
+        return LAYER_TYPE_UNSET;
+    }
+
+    private void drawRefreshDrawable(Canvas canvas) {
+        int dragOffset = getDragOffset();
+        RefreshDrawable drawable;
+        int top;
+        if(dragOffset > 0 && mHeaderDrawable != null) {
+            drawable = mHeaderDrawable;
+            top = mContentView.getTop() - dragOffset;
+        } else if(dragOffset < 0 && mFooterDrawable != null) {
+            drawable = mFooterDrawable;
+            top = mContentView.getBottom();
+        } else {
+            return;
+        }
 
+        int exposedHeight = Math.abs(dragOffset);
+        int saveCount = canvas.save();
+        canvas.clipRect(0, top, getWidth(), top + exposedHeight);
+        canvas.translate(0, top);
+        if(drawable.draw(canvas, getWidth(), exposedHeight, dragOffset < 0, getDrawingTime())) {
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+        if((child != mHeaderView && child != mFooterView) || mContentView == null) {
+            return super.drawChild(canvas, child, drawingTime);
+        }
+
+        // header/footer只绘制露出的部分, 未露出时不绘制
+        int dragOffset = getDragOffset();
+        int clipTop;
+        int clipBottom;
+        if(child == mHeaderView) {
+            if(dragOffset <= 0) {
+                return false;
+            }
+            clipBottom = mContentView.getTop();
+            clipTop = clipBottom - dragOffset;
+        } else {
+            if(dragOffset >= 0) {
+                return false;
+            }
+            clipTop = mContentView.getBottom();
+            clipBottom = clipTop - dragOffset;
+        }
 
-        mContentView.layout(l, t, l + mContentView.getMeasuredWidth(), t + mContentView.getMeasuredHeight());
+        int saveCount = canvas.save();
+        canvas.clipRect(0, clipTop, getWidth(), clipBottom);
+        boolean more = super.drawChild(canvas, child, drawingTime);
+        canvas.restoreToCount(saveCount);
+        return more;
     }
 
 
@@ -158,11 +524,15 @@ public class RefreshLayout extends ViewGroup {
     private float mEveryMoveYDistance; // 滑动时每次移动的距离(一次事件内,Y轴)
     private float mLastMoveXPosition;
     private float mLastMoveYPosition;
+    private boolean mHistoricalMoveEnabled; // 是否使用MotionEvent中批量的历史采样点计算拖动距离
+    private float[] mMoveYSamples = new float[8]; // 尚未应用的每个采样点的移动距离(Y轴)
+    private int mMoveYSampleCount;
+    private boolean mFrameAlignedMoveEnabled; // 是否将移动合并到每一帧只处理一次
+    private float mPendingMoveYDistance; // 尚未应用的移动距离(Y轴)
+    private boolean mHasPendingMoveFrame;
+    private VelocityTracker mVelocityTracker;
+    private float mReleaseYVelocity; // 手指抬起时的速度(Y轴, 像素/秒, 向下为正)
     private boolean mShouldControlMotionEvent;
-    private boolean mHasCalledReadyEvent;
-    private boolean mHasReachUpCPEvent; // 上拉达到临界点
-    private boolean mHasReachDownCPEvent;// 下拉达到临界点
-    private boolean mDealWithMoveAction;
 
     private int getRestPointerIndex(MotionEvent ev, int exceptPointerIndex) {
         for(int index = 0; index< MotionEventCompat.getPointerCount(ev); index++) {
@@ -176,6 +546,14 @@ public class RefreshLayout extends ViewGroup {
 
     private void dealWithMultiMotionEvent(MotionEvent ev) {
         int eventAction = MotionEventCompat.getActionMasked(ev);
+        if(mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        if(eventAction == MotionEvent.ACTION_DOWN) {
+            mVelocityTracker.clear();
+        }
+        mVelocityTracker.addMovement(ev);
+
         switch (eventAction) {
             case MotionEvent.ACTION_DOWN: { // 第一个手指按下
                 int pointerIndex = MotionEventCompat.getActionIndex(ev);
@@ -186,6 +564,7 @@ public class RefreshLayout extends ViewGroup {
                 mEveryMoveYDistance = 0f;
                 mLastMoveXPosition = MotionEventCompat.getX(ev, pointerIndex);
                 mLastMoveYPosition = MotionEventCompat.getY(ev, pointerIndex);
+                mReleaseYVelocity = 0f;
                 break;
             }
             case MotionEvent.ACTION_POINTER_DOWN: { // 另一个手指按下
@@ -225,14 +604,55 @@ public class RefreshLayout extends ViewGroup {
                 }
                 break;
             }
-            case MotionEvent.ACTION_UP: // 所有手指抬起
+            case MotionEvent.ACTION_UP: { // 所有手指抬起
+                // 记录松手时的速度
+                mVelocityTracker.computeCurrentVelocity(1000, mMaximumFlingVelocity);
+                mReleaseYVelocity = VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId);
+                mActivePointerId = MotionEvent.INVALID_POINTER_ID;
+                recycleVelocityTracker();
+                break;
+            }
             case MotionEvent.ACTION_CANCEL: { // 本次事件取消
+                mReleaseYVelocity = 0f;
                 mActivePointerId = MotionEvent.INVALID_POINTER_ID;
+                recycleVelocityTracker();
                 break;
             }
         }
     }
 
+    // 追加本次事件内各采样点(包括批量的历史采样点)的移动距离
+    private void recordMoveYSamples(MotionEvent ev) {
+        int pointerIndex = MotionEventCompat.findPointerIndex(ev, mActivePointerId);
+        if(pointerIndex < 0) {
+            return;
+        }
+
+        int historySize = ev.getHistorySize();
+        int sampleCount = mMoveYSampleCount + historySize + 1;
+        if(mMoveYSamples.length < sampleCount) {
+            float[] samples = new float[sampleCount * 2];
+            System.arraycopy(mMoveYSamples, 0, samples, 0, mMoveYSampleCount);
+            mMoveYSamples = samples;
+        }
+
+        float currentMoveYPosition = MotionEventCompat.getY(ev, pointerIndex);
+        float lastMoveYPosition = currentMoveYPosition - mEveryMoveYDistance;
+        for(int index = 0; index < historySize; index++) {
+            float historicalY = ev.getHistoricalY(pointerIndex, index);
+            mMoveYSamples[mMoveYSampleCount++] = historicalY - lastMoveYPosition;
+            lastMoveYPosition = historicalY;
+        }
+        mMoveYSamples[mMoveYSampleCount++] = currentMoveYPosition - lastMoveYPosition;
+    }
+
+    private void recycleVelocityTracker() {
+        if(mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
     @Override
     public boolean dispatchTouchEvent(MotionEvent ev) {
         // 处理多点触控及更新相关移动数据信息
@@ -240,26 +660,43 @@ public class RefreshLayout extends ViewGroup {
 
         switch (ev.getAction()) {
             case MotionEvent.ACTION_DOWN: {
-                mShouldControlMotionEvent = false;
-                mHasCalledReadyEvent = false;
-                mHasReachUpCPEvent = false;
-                mHasReachDownCPEvent = false;
+                clearPendingMove();
+                cancelEdgeAbsorb();
+                // 手指按下时若正在回弹, 则停在当前位置并直接接管后续的拖动
+                mShouldControlMotionEvent = catchScrollAnimation();
                 break;
             }
             case MotionEvent.ACTION_MOVE: {
-                mDealWithMoveAction = true;
-                mShouldControlMotionEvent = shouldControlMoveEvent();
+                // 子View通过嵌套滑动传递滑动距离时不再拦截事件
+                beginTraceSection(TRACE_CONTROL_MOVE);
+                mShouldControlMotionEvent = !mNestedScrollInProgress && shouldControlMoveEvent();
+                endTraceSection();
+                if(!mShouldControlMotionEvent) {
+                    // 交还控制前先应用已经累积的移动
+                    applyPendingMove();
+                }
                 break;
             }
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL: {
-                mDealWithMoveAction = false;
+                // 按住时完成了刷新, 手势由子View处理时onTouchEvent收不到松手, 在这里弹回
+                if(mRefreshState == RefreshState.SETTLING && !isSettling()) {
+                    resetInitialPosition(0);
+                }
                 break;
             }
         }
 
         // 不破坏原有的消息分发机制
-        return super.dispatchTouchEvent(ev);
+        boolean handled = super.dispatchTouchEvent(ev);
+
+        // 松手后由内容View自己fling时, 跟踪其是否到达边缘. 只处理竖直方向的滑动, 横向滑动的子View会带有少量竖直速度
+        if(ev.getAction() == MotionEvent.ACTION_UP && mReleaseYVelocity != 0
+                && Math.abs(mWholeMoveYDistance) > mTouchSlop
+                && Math.abs(mWholeMoveYDistance) > Math.abs(mWholeMoveXDistance)) {
+            startEdgeAbsorb((int) -mReleaseYVelocity);
+        }
+        return handled;
     }
 
     @Override
@@ -274,14 +711,15 @@ public class RefreshLayout extends ViewGroup {
                 break;
             case MotionEvent.ACTION_MOVE:
                 if(mShouldControlMotionEvent) {
-                    executeMoveAction();
-                    notifyDragEvent();
-                    notifyReadyEvent();
-                    notifyDragCPEvent();
+                    if(mHistoricalMoveEnabled) {
+                        recordMoveYSamples(event);
+                    }
+                    queueMoveAction(mEveryMoveYDistance);
                 }
                 break;
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
+                applyPendingMove();
                 executeResetAction();
                 break;
         }
@@ -289,12 +727,306 @@ public class RefreshLayout extends ViewGroup {
         return true;
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        getViewTreeObserver().addOnScrollChangedListener(mOnScrollChangedListener);
+        getViewTreeObserver().addOnPreDrawListener(mOnPreDrawListener);
+        if(mRefreshState == RefreshState.REFRESHING || mRefreshState == RefreshState.LOADING) {
+            if(!mHasNotifiedRefresh) {
+                // 离开窗口时还未通知的刷新
+                post(mNotifyRefreshRunnable);
+            }
+            if(mRefreshTimeout > 0) {
+                // 离开窗口时移除了超时, 重新计时
+                mMainHandler.postDelayed(mRefreshTimeoutRunnable, mRefreshTimeout);
+            }
+        }
+        if(mRefreshTimeKey != null && mRefreshTimeLoaded) {
+            // 相同key的其它RefreshLayout可能已经刷新过
+            mLastRefreshTime = sRefreshTimes.get(mRefreshTimeKey);
+            notifyLastRefreshTime();
+            startRefreshIfStale(AUTO_REFRESH_DURATION);
+        }
+        // 还未读取完成时, 读取完成后再检查
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mAttached = false;
+        getViewTreeObserver().removeOnScrollChangedListener(mOnScrollChangedListener);
+        getViewTreeObserver().removeOnPreDrawListener(mOnPreDrawListener);
+        clearPendingMove();
+        mNestedScrollingChildHelper.onDetachedFromWindow();
+
+        // 移除所有未执行的回调, 动作直接结束在最终位置
+        removeCallbacks(mStartRefreshRunnable);
+        // 等待布局的刷新保留到重新布局时再开始
+        removeCallbacks(mDeferredStartRefreshRunnable);
+        removeCallbacks(mNotifyFinishRunnable);
+        removeCallbacks(mNotifyRefreshRunnable);
+        removeCallbacks(mCompleteRefreshRunnable);
+        removeCallbacks(mMetricsFrameRunnable);
+        mMetricsFrameScheduled = false;
+        removeCallbacks(mEdgeAbsorbLoadMoreRunnable);
+        mEdgeAbsorbLoadMorePosted = false;
+        // 超时在主线程Handler上, 不移除会持有已经离开窗口的页面
+        mMainHandler.removeCallbacks(mRefreshTimeoutRunnable);
+        // 边缘回弹的终点是越界最远处, 结束时应回到初始位置
+        boolean edgeBouncing = mEdgeAbsorbState == EDGE_ABSORB_BOUNCING;
+        cancelEdgeAbsorb();
+        if(!mScroller.isFinished()) {
+            mScroller.abortAnimation();
+            setDragOffset(edgeBouncing ? 0 : -mScroller.getFinalY());
+        }
+        if(mSpringScroller != null && !mSpringScroller.isFinished()) {
+            mSpringScroller.abortAnimation();
+            setDragOffset(-mSpringScroller.getFinalY());
+        }
+        mScrollEndAction = SCROLL_END_NONE;
+        if(mHasPendingComplete) {
+            completeRefreshOrLoad();
+        } else if(mRefreshState == RefreshState.SETTLING) {
+            finishSettleNow();
+        }
+        // 还未通知的刷新保留到重新添加到窗口时再通知
+        // 之后才到达的完成请求(主线程Handler上处理)同样直接弹回, 见completeRefreshOrLoad()
+
+        super.onDetachedFromWindow();
+    }
+
+    private final Runnable mApplyMoveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mHasPendingMoveFrame = false;
+            applyPendingMove();
+        }
+    };
+
+    // 累积本次移动, 逐帧模式下在下一帧统一处理, 否则立即处理
+    private void queueMoveAction(float moveYDistance) {
+        mPendingMoveYDistance += moveYDistance;
+        if(!mFrameAlignedMoveEnabled) {
+            applyPendingMove();
+        } else if(!mHasPendingMoveFrame) {
+            mHasPendingMoveFrame = true;
+            ViewCompat.postOnAnimation(this, mApplyMoveRunnable);
+        }
+    }
+
+    private void applyPendingMove() {
+        if(mHasPendingMoveFrame) {
+            removeCallbacks(mApplyMoveRunnable);
+            mHasPendingMoveFrame = false;
+        }
+
+        float moveYDistance = mPendingMoveYDistance;
+        if(moveYDistance == 0 && mMoveYSampleCount == 0) {
+            return;
+        }
+
+        beginTraceSection(TRACE_MOVE);
+        executeMoveAction(moveYDistance);
+        mPendingMoveYDistance = 0f;
+        mMoveYSampleCount = 0;
+        endTraceSection();
+
+        beginTraceSection(TRACE_NOTIFY_DRAG);
+        updateDragState();
+        endTraceSection();
+    }
+
+    private void clearPendingMove() {
+        if(mHasPendingMoveFrame) {
+            removeCallbacks(mApplyMoveRunnable);
+            mHasPendingMoveFrame = false;
+        }
+        mPendingMoveYDistance = 0f;
+        mMoveYSampleCount = 0;
+    }
+
     @Override
     public void computeScroll() {
-        if (mScroller.computeScrollOffset()) {
-            scrollTo(0, mScroller.getCurrY());
+        beginTraceSection(TRACE_COMPUTE_SCROLL);
+        if(mEdgeAbsorbState == EDGE_ABSORB_TRACKING) {
+            trackContentFling();
+        } else if (mScroller.computeScrollOffset()) {
+            setDragOffset(-mScroller.getCurrY());
+            if(mEdgeAbsorbState == EDGE_ABSORB_BOUNCING) {
+                checkEdgeAbsorbLoadMore();
+            }
             invalidate();
+        } else if(mSpringScroller != null && mSpringScroller.computeScrollOffset()) {
+            setDragOffset(-mSpringScroller.getCurrY());
+            invalidate();
+        } else {
+            mEdgeAbsorbState = EDGE_ABSORB_NONE;
+            if(mScrollEndAction != SCROLL_END_NONE) {
+                dispatchScrollEndAction();
+            }
+        }
+        endTraceSection();
+    }
+
+    // 停止正在进行的回弹动画, 返回header或footer是否仍处于拉出状态
+    private boolean catchScrollAnimation() {
+        if(mContentView == null || !isSettling()) {
+            return false;
+        }
+
+        if(!mScroller.isFinished()) {
+            mScroller.forceFinished(true);
+            setDragOffset(-mScroller.getCurrY());
+        }
+        if(mSpringScroller != null && !mSpringScroller.isFinished()) {
+            mSpringScroller.forceFinished();
+            setDragOffset(-mSpringScroller.getCurrY());
+        }
+
+        // 被打断的动画不会再结束, 对应的回调立即执行
+        if(mScrollEndAction != SCROLL_END_NONE) {
+            int action = mScrollEndAction;
+            mScrollEndAction = SCROLL_END_NONE;
+            if(action == SCROLL_END_FINISH) {
+                notifyFinishEvent();
+            } else if(action == SCROLL_END_REFRESH) {
+                notifyRefreshOrLoadEvent();
+            } else if(action == SCROLL_END_COMPLETE) {
+                completeRefreshOrLoad();
+            }
+        }
+        return getDragOffset() != 0;
+    }
+
+    private final Runnable mNotifyFinishRunnable = new Runnable() {
+        @Override
+        public void run() {
+            notifyFinishEvent();
+        }
+    };
+
+    private final Runnable mNotifyRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            notifyRefreshOrLoadEvent();
+        }
+    };
+
+    private final Runnable mCompleteRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            completeRefreshOrLoad();
+        }
+    };
+
+    // 设置滚动结束后需要执行的动作, 当前没有滚动时立即执行
+    private void setScrollEndAction(int action) {
+        if(mScrollEndAction != SCROLL_END_NONE && mScrollEndAction != action) {
+            // 上一个动作被新的滚动打断, 先执行掉
+            dispatchScrollEndAction();
+        }
+
+        mScrollEndAction = action;
+        if(!isSettling()) {
+            dispatchScrollEndAction();
+        }
+    }
+
+    private void dispatchScrollEndAction() {
+        int action = mScrollEndAction;
+        mScrollEndAction = SCROLL_END_NONE;
+        // 不在绘制过程中回调header/footer及RefreshListener
+        switch (action) {
+            case SCROLL_END_FINISH:
+                post(mNotifyFinishRunnable);
+                break;
+            case SCROLL_END_REFRESH:
+                post(mNotifyRefreshRunnable);
+                break;
+            case SCROLL_END_COMPLETE:
+                post(mCompleteRefreshRunnable);
+                break;
+        }
+    }
+
+    // 用OverScroller模拟内容View的fling, 以便得知其到达边缘时的剩余速度
+    private void startEdgeAbsorb(int velocityY) {
+        if(!mEdgeAbsorbEnabled || mContentView == null
+                || mRefreshState != RefreshState.IDLE || getDragOffset() != 0 || isSettling()
+                || Math.abs(velocityY) < mMinimumFlingVelocity) {
+            return;
+        }
+
+        mEdgeAbsorbDirection = velocityY > 0 ? 1 : -1;
+        if((mEdgeAbsorbDirection < 0 && mHeaderHandler == null)
+                || (mEdgeAbsorbDirection > 0 && mFooterHandler == null)) {
+            return;
+        }
+        if(!ViewCompat.canScrollVertically(mContentView, mEdgeAbsorbDirection)) {
+            // 内容View已经在边缘, 不会fling
+            return;
+        }
+        if(mEdgeAbsorbDirection < 0) {
+            ensureHeaderView();
+        } else {
+            ensureFooterView();
+        }
+
+        mScroller.fling(0, 0, 0, velocityY, 0, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        mEdgeAbsorbState = EDGE_ABSORB_TRACKING;
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    private void trackContentFling() {
+        if(!mScroller.computeScrollOffset()) {
+            mEdgeAbsorbState = EDGE_ABSORB_NONE;
+            return;
         }
+
+        if(!ViewCompat.canScrollVertically(mContentView, mEdgeAbsorbDirection)) {
+            // 内容View已到达边缘, 以剩余速度弹出header/footer后再弹回
+            int overDistance = mEdgeAbsorbDirection < 0 ? sHeaderSpringDistance : sFooterSpringDistance;
+            if(overDistance <= 0) {
+                mScroller.forceFinished(true);
+                mEdgeAbsorbState = EDGE_ABSORB_NONE;
+                return;
+            }
+            mScroller.notifyVerticalEdgeReached(0, 0, overDistance);
+            mEdgeAbsorbState = EDGE_ABSORB_BOUNCING;
+        }
+        ViewCompat.postInvalidateOnAnimation(this);
+    }
+
+    // 回弹时footer完全露出, 直接触发加载更多
+    private void checkEdgeAbsorbLoadMore() {
+        if(!mEdgeAbsorbLoadMorePosted && canEdgeAbsorbLoadMore() && -getDragOffset() >= sFooterSpringDistance) {
+            // 在绘制过程中, 不在这里直接回调header/footer
+            mEdgeAbsorbLoadMorePosted = true;
+            post(mEdgeAbsorbLoadMoreRunnable);
+        }
+    }
+
+    private boolean canEdgeAbsorbLoadMore() {
+        return mEdgeAbsorbLoadMoreEnabled && mRefreshListener != null && mFooterHandler != null
+                && !mNoMoreData && mRefreshState == RefreshState.IDLE;
+    }
+
+    private final Runnable mEdgeAbsorbLoadMoreRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mEdgeAbsorbLoadMorePosted = false;
+            if(mEdgeAbsorbState == EDGE_ABSORB_BOUNCING && canEdgeAbsorbLoadMore()) {
+                startRefreshOrLoad(RefreshState.LOADING, 0, 200);
+            }
+        }
+    };
+
+    private void cancelEdgeAbsorb() {
+        if(mEdgeAbsorbState == EDGE_ABSORB_TRACKING) {
+            mScroller.forceFinished(true);
+        }
+        mEdgeAbsorbState = EDGE_ABSORB_NONE;
     }
 
     // 判断是否需要控制滑动事件
@@ -310,24 +1042,24 @@ public class RefreshLayout extends ViewGroup {
             case OVERLAP:
                 if(mHeaderHandler != null) {
                     if(canScrollDown && (mEveryMoveYDistance > 0 || (mContentView.getTop() > 20))) {
-                        return true;
+                        return ensureHeaderView();
                     }
                 }
                 if(mFooterHandler != null) {
                     if(canScrollUp && (mEveryMoveYDistance < 0 || (mContentView.getBottom() < -20))) {
-                        return true;
+                        return ensureFooterView();
                     }
                 }
                 break;
             case FOLLOW:
                 if(mHeaderHandler != null) {
                     if(canScrollDown && (mEveryMoveYDistance > 0 || getScrollY() < -20)) {
-                        return true;
+                        return ensureHeaderView();
                     }
                 }
                 if(mFooterHandler != null) {
                     if(canScrollUp && (mEveryMoveYDistance < 0 || getScrollY() > 20)) {
-                        return true;
+                        return ensureFooterView();
                     }
                 }
                 break;
@@ -336,249 +1068,400 @@ public class RefreshLayout extends ViewGroup {
         return false;
     }
 
-    private void executeMoveAction() {
+    private void executeMoveAction(float moveYDistance) {
+        float dragOffset = getDragOffset();
+        float mMoveDistance;
+        if(mHistoricalMoveEnabled && mMoveYSampleCount > 0) {
+            // 逐个采样点计算阻尼, 但只移动一次
+            float offset = dragOffset;
+            for(int index = 0; index < mMoveYSampleCount; index++) {
+                offset += getDampedMoveDistance(offset, mMoveYSamples[index]);
+            }
+            mMoveDistance = offset - dragOffset;
+        } else {
+            mMoveDistance = getDampedMoveDistance(dragOffset, moveYDistance);
+        }
+
         switch (mDrawType) {
             case OVERLAP: {
-                float mMoveDistance;
-                if (mEveryMoveYDistance > 0) {
-                    mMoveDistance = ((float) (sHeaderMaxDragDistance - mContentView.getTop()) / sHeaderMaxDragDistance) * mEveryMoveYDistance / 2;
-                } else {
-                    mMoveDistance = ((float) (sFooterMaxDragDistance - getHeight() + mContentView.getBottom()) / sFooterMaxDragDistance) * mEveryMoveYDistance / 2;
-                }
-                int top = (int) (mContentView.getTop() + mMoveDistance);
-                mContentView.layout(mContentView.getLeft(), top, mContentView.getRight(), top + mContentView.getMeasuredHeight());
+                mContentView.offsetTopAndBottom((int) mMoveDistance);
+                invalidate();
                 break;
             }
             case FOLLOW: {
-                float mMoveDistance;
-                if(mEveryMoveYDistance > 0) {
-                    mMoveDistance = ((float) (sHeaderMaxDragDistance + getScrollY()) / sHeaderMaxDragDistance) * mEveryMoveYDistance / 2;
-                } else {
-                    mMoveDistance = ((float) (sFooterMaxDragDistance - getScrollY()) / sFooterMaxDragDistance) * mEveryMoveYDistance / 2;
-                }
                 scrollBy(0, (int)(-mMoveDistance));
                 break;
             }
         }
     }
 
-    private void notifyDragEvent() {
+    // 直接设置拖动的偏移量(无阻尼)
+    private void setDragOffset(int dragOffset) {
         switch (mDrawType) {
             case OVERLAP: {
-                int contentViewTop = mContentView.getTop();
-                if (contentViewTop > 0 && mHeaderHandler != null) {
-                    mHeaderHandler.onDragEvent(contentViewTop);
-                }
-                if (contentViewTop < 0 && mFooterHandler != null) {
-                    mFooterHandler.onDragEvent(contentViewTop);
-                }
+                // 只移动内容View, 不触发重新布局
+                mContentView.offsetTopAndBottom(dragOffset - mContentView.getTop());
+                invalidate();
                 break;
             }
             case FOLLOW: {
-                int contentViewDrag = -getScrollY();
-                if (contentViewDrag > 0 && mHeaderHandler != null) {
-                    mHeaderHandler.onDragEvent(contentViewDrag);
-                }
-                if (contentViewDrag < 0 && mFooterHandler != null) {
-                    mFooterHandler.onDragEvent(contentViewDrag);
-                }
+                scrollTo(0, -dragOffset);
                 break;
             }
         }
     }
 
-    private void notifyReadyEvent() {
-        if(!mHasCalledReadyEvent){
-            if (isHeaderDragEvent()) {
-                if(mHeaderHandler != null) {
-                    mHeaderHandler.onDragReady();
-                }
-                mHasCalledReadyEvent = true;
-            } else if(isFooterDragEvent()) {
-                if(mFooterHandler != null) {
-                    mFooterHandler.onDragReady();
-                }
-                mHasCalledReadyEvent = true;
-            }
+    // 当前拖动的偏移量, 大于0表示下拉, 小于0表示上拉
+    private int getDragOffset() {
+        switch (mDrawType) {
+            case OVERLAP:
+                return mContentView.getTop();
+            case FOLLOW:
+                return -getScrollY();
+            default:
+                return 0;
         }
     }
 
-    private void notifyDragCPEvent() {
-        if(mEveryMoveYDistance == 0) {
-            return;
-        }
-
-        boolean moveUp = mEveryMoveYDistance < 0;
-        if(isHeaderDragEvent()) {
-            if(!moveUp){
-                if((isHeaderOverDrag()) && !mHasReachDownCPEvent){
-                    mHasReachDownCPEvent = true;
-                    mHasReachUpCPEvent = false;
-                    if(mHeaderHandler!=null) {
-                        mHeaderHandler.onDragCriticalPoint(true);
-                    }
-                }
-            } else {
-                if(!isHeaderOverDrag() && !mHasReachUpCPEvent){
-                    mHasReachUpCPEvent = true;
-                    mHasReachDownCPEvent = false;
-                    if(mHeaderHandler != null) {
-                        mHeaderHandler.onDragCriticalPoint(false);
-                    }
-                }
-            }
+    // 根据拖动的偏移量计算阻尼后的移动距离, 拉出的距离限制在0到最大距离之间
+    private float getDampedMoveDistance(float dragOffset, float moveDistance) {
+        if(dragOffset > 0 || (dragOffset == 0 && moveDistance > 0)) {
+            return getDampedDragDistance(mHeaderDragResistance, dragOffset, moveDistance, sHeaderMaxDragDistance) - dragOffset;
         } else {
-            if(moveUp){
-                if(isFooterOverDrag() && !mHasReachUpCPEvent){
-                    mHasReachUpCPEvent = true;
-                    mHasReachDownCPEvent = false;
-                    if(mFooterHandler != null) {
-                        mFooterHandler.onDragCriticalPoint(false);
-                    }
-                }
-            } else {
-                if(!isFooterOverDrag() && !mHasReachDownCPEvent){
-                    mHasReachDownCPEvent = true;
-                    mHasReachUpCPEvent = false;
-                    if(mFooterHandler != null) {
-                        mFooterHandler.onDragCriticalPoint(true);
-                    }
-                }
-            }
+            return -getDampedDragDistance(mFooterDragResistance, -dragOffset, -moveDistance, sFooterMaxDragDistance) - dragOffset;
         }
     }
 
-    private boolean notifyDragStartAnimalEvent() {
-        if(isHeaderOverDrag()) {
-            mCallListenerType = 1;
-            if(mHeaderHandler != null) {
-                mHeaderHandler.onDragStartAnim();
-            }
-            return true;
-        } else if(isFooterOverDrag()) {
-            mCallListenerType = 2;
-            if(mFooterHandler != null) {
-                mFooterHandler.onDragStartAnim();
-            }
-            return true;
-        } else {
-            return false;
+    static float getDampedDragDistance(DragResistance dragResistance,
+                                       float dragDistance, float moveDistance, int maxDistance) {
+        if(maxDistance <= 0) {
+            return 0f;
         }
-    }
 
-    private void notifyRefreshOrLoadEvent() {
-        if(mRefreshListener != null) {
-            if (mCallListenerType == 1) {
-                mRefreshListener.onRefreshEvent();
-            } else if(mCallListenerType == 2) {
-                mRefreshListener.onLoadMoreEvent();
-            }
+        float resistance = dragResistance.getResistance(dragDistance, maxDistance);
+        if(moveDistance < 0 && resistance < MIN_PUSH_BACK_RESISTANCE) {
+            // 往回推时保证能够推回去
+            resistance = MIN_PUSH_BACK_RESISTANCE;
         }
-    }
 
-    private void notifyFinishEvent() {
-        if(mCallListenerType != 0) {
-            if(mCallListenerType == 1 && mHeaderHandler != null) {
-                mHeaderHandler.onDragFinishAnim();
-            }
+        float newDragDistance = dragDistance + resistance * moveDistance;
+        if(newDragDistance < 0f) {
+            return 0f;
+        }
+        return newDragDistance > maxDistance ? maxDistance : newDragDistance;
+    }
 
-            if(mCallListenerType == 2 && mFooterHandler != null) {
-                mFooterHandler.onDragFinishAnim();
+    private void setRefreshState(RefreshState state) {
+        if(mRefreshState == state) {
+            return;
+        }
+
+        RefreshState oldState = mRefreshState;
+        mRefreshState = state;
+        if(state == RefreshState.SETTLING) {
+            mSettlingFrom = oldState;
+        }
+        if(!isDragState(state)) {
+            mDragSide = 0;
+        }
+        if(state != RefreshState.REFRESHING && state != RefreshState.LOADING) {
+            mMainHandler.removeCallbacks(mRefreshTimeoutRunnable);
+        }
+        // 只在拖动及回弹时使用硬件层, 等待刷新结果期间header/footer的进度动画及内容View都可能在重绘
+        if(state == RefreshState.DRAGGING_HEADER || state == RefreshState.DRAGGING_FOOTER
+                || state == RefreshState.ARMED || state == RefreshState.SETTLING) {
+            applyDragLayers();
+        } else {
+            restoreDragLayers();
+        }
+
+        if(mMetricsListener != null) {
+            if(oldState == RefreshState.IDLE) {
+                mMetrics.reset();
             }
+            scheduleMetricsFrame();
+        }
 
-            mCallListenerType = 0;
+        if(mRefreshStateListener != null) {
+            mRefreshStateListener.onRefreshStateChanged(oldState, state);
+        }
+
+        // 一次拖动或刷新结束
+        if(state == RefreshState.IDLE && mMetricsListener != null) {
+            mMetricsListener.onRefreshMetrics(mMetrics);
         }
     }
 
-    // 回到初初位置
-    private void resetInitialPosition() {
-        int animationDuration = 100;
-        if(mDrawType == RefreshDrawType.OVERLAP) {
-            if(mContentView.getTop() == 0) {
+    // 拖动, 回弹及动画过程中统计帧耗时, 刷新等待期间不统计
+    private boolean shouldTrackFrames() {
+        return (mRefreshState != RefreshState.IDLE && mRefreshState != RefreshState.REFRESHING
+                && mRefreshState != RefreshState.LOADING) || isSettling();
+    }
+
+    private void scheduleMetricsFrame() {
+        if(mMetricsListener != null && !mMetricsFrameScheduled && shouldTrackFrames()) {
+            mMetricsFrameScheduled = true;
+            mLastMetricsFrameTime = 0;
+            ViewCompat.postOnAnimation(this, mMetricsFrameRunnable);
+        }
+    }
+
+    private final Runnable mMetricsFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long frameTime = System.nanoTime();
+            if(mMetricsListener == null || !shouldTrackFrames()) {
+                mMetricsFrameScheduled = false;
                 return;
             }
 
-            if (mContentView.getMeasuredHeight() > 0) {
-                animationDuration = Math.abs(400 * mContentView.getTop() / mContentView.getMeasuredHeight());
-            }
-            if(animationDuration < 100) {
-                animationDuration = 100;
+            if(mLastMetricsFrameTime > 0) {
+                mMetrics.recordFrame(frameTime - mLastMetricsFrameTime);
             }
+            mLastMetricsFrameTime = frameTime;
+            ViewCompat.postOnAnimation(RefreshLayout.this, this);
+        }
+    };
 
-            Animation animation = new TranslateAnimation(0, 0, mContentView.getTop(), 0);
-            animation.setDuration(animationDuration);
-            animation.setFillAfter(true);
-            mContentView.startAnimation(animation);
-            mContentView.layout(
-                    mContentView.getLeft(),
-                    0,
-                    mContentView.getLeft() + mContentView.getMeasuredWidth(),
-                    mContentView.getMeasuredHeight()
-            );
-        } else if(mDrawType == RefreshDrawType.FOLLOW) {
-            if (mContentView.getMeasuredHeight()>0) {
-                animationDuration = Math.abs(400 * getScrollY() / mContentView.getMeasuredHeight());
-            }
-            if(animationDuration < 100) {
-                animationDuration = 100;
+    private static boolean isDragState(RefreshState state) {
+        return state == RefreshState.IDLE || state == RefreshState.DRAGGING_HEADER
+                || state == RefreshState.DRAGGING_FOOTER || state == RefreshState.ARMED;
+    }
+
+    // 每次移动后调用一次: 通知拖动距离, 并计算拖动状态的变化
+    private void updateDragState() {
+        int dragOffset = getDragOffset();
+        int dragSide = dragOffset > 0 ? 1 : (dragOffset < 0 ? -1 : 0);
+        RefreshHandler handler = getSideHandler(dragSide);
+        if(handler != null) {
+            handler.onDragEvent(dragOffset);
+        }
+
+        // 刷新, 加载及弹回过程中的拖动不会改变状态, 也就不会重复触发刷新
+        if(!isDragState(mRefreshState)) {
+            return;
+        }
+
+        boolean armed = dragSide > 0 ? dragOffset > sHeaderMinDragDistance
+                : (dragSide < 0 && -dragOffset > sFooterMinDragDistance);
+        boolean wasArmed = mRefreshState == RefreshState.ARMED;
+        if(dragSide == mDragSide && armed == wasArmed) {
+            return;
+        }
+
+        if(wasArmed) {
+            notifyDragCPEvent(mDragSide, false);
+        }
+        if(dragSide != mDragSide && handler != null) {
+            handler.onDragReady();
+        }
+        if(armed) {
+            notifyDragCPEvent(dragSide, true);
+        }
+
+        if(armed) {
+            setRefreshState(RefreshState.ARMED);
+        } else if(dragSide > 0) {
+            setRefreshState(RefreshState.DRAGGING_HEADER);
+        } else if(dragSide < 0) {
+            setRefreshState(RefreshState.DRAGGING_FOOTER);
+        } else {
+            setRefreshState(RefreshState.IDLE);
+        }
+        mDragSide = dragSide;
+    }
+
+    private RefreshHandler getSideHandler(int side) {
+        if(side > 0) {
+            return mHeaderHandler;
+        } else if(side < 0) {
+            return mFooterHandler;
+        }
+        return null;
+    }
+
+    // 到达或离开临界点
+    private void notifyDragCPEvent(int side, boolean armed) {
+        if(side > 0 && mHeaderHandler != null) {
+            mHeaderHandler.onDragCriticalPoint(armed);
+        } else if(side < 0 && mFooterHandler != null) {
+            mFooterHandler.onDragCriticalPoint(!armed);
+        }
+    }
+
+    // 开始刷新或加载更多, 同一时间只会有一个
+    private void startRefreshOrLoad(RefreshState state, int velocityY, int duration) {
+        beginTraceSection(TRACE_START_REFRESH);
+        mHasNotifiedRefresh = false;
+        mHasPendingComplete = false;
+        mLoadingFollowsPrefetch = false;
+        mRefreshGeneration++;
+        setRefreshState(state);
+        if(mMetricsListener != null) {
+            // 程序触发的刷新以开始时间作为松手时间
+            mMetrics.markRelease(System.nanoTime());
+        }
+        if(mRefreshTimeout > 0) {
+            mMainHandler.removeCallbacks(mRefreshTimeoutRunnable);
+            mMainHandler.postDelayed(mRefreshTimeoutRunnable, mRefreshTimeout);
+        }
+
+        RefreshHandler handler = state == RefreshState.REFRESHING ? mHeaderHandler : mFooterHandler;
+        if(handler != null) {
+            handler.onDragStartAnim();
+        }
+        resetRefreshPosition(velocityY, duration);
+        endTraceSection();
+    }
+
+    private void notifyRefreshOrLoadEvent() {
+        if(mHasNotifiedRefresh || mRefreshListener == null) {
+            return;
+        }
+
+        if(mMetricsListener != null && (mRefreshState == RefreshState.REFRESHING || mRefreshState == RefreshState.LOADING)) {
+            mMetrics.markRefresh(System.nanoTime());
+        }
+
+        if(mRefreshState == RefreshState.REFRESHING) {
+            mHasNotifiedRefresh = true;
+            beginTraceSection(TRACE_NOTIFY_REFRESH);
+            mRefreshListener.onRefreshEvent(new RefreshTicket(this, mRefreshGeneration, false, false));
+            endTraceSection();
+        } else if(mRefreshState == RefreshState.LOADING) {
+            mHasNotifiedRefresh = true;
+            if(mPrefetchInFlight) {
+                // 预加载的请求还没有返回, 不重复请求
+                mLoadingFollowsPrefetch = true;
+                return;
             }
+            beginTraceSection(TRACE_NOTIFY_REFRESH);
+            mRefreshListener.onLoadMoreEvent(new RefreshTicket(this, mRefreshGeneration, true, false));
+            endTraceSection();
+        }
+    }
 
-            mScroller.startScroll(0, getScrollY(), 0, -getScrollY(), animationDuration);
-            invalidate();
+    private void notifyFinishEvent() {
+        if(mRefreshState != RefreshState.SETTLING) {
+            return;
         }
 
-        postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                notifyFinishEvent();
+        beginTraceSection(TRACE_NOTIFY_FINISH);
+        if(mSettlingFrom == RefreshState.REFRESHING && mHeaderHandler != null) {
+            mHeaderHandler.onDragFinishAnim();
+        } else if(mSettlingFrom == RefreshState.LOADING && mFooterHandler != null) {
+            mFooterHandler.onDragFinishAnim();
+        }
+        endTraceSection();
+        if(mMetricsListener != null) {
+            mMetrics.markFinish(System.nanoTime());
+        }
+        setRefreshState(RefreshState.IDLE);
+    }
+
+    // 直接回到初始位置并结束弹回, 用于无法执行动画时
+    private void finishSettleNow() {
+        mScroller.forceFinished(true);
+        if(mSpringScroller != null) {
+            mSpringScroller.forceFinished();
+        }
+        setDragOffset(0);
+        notifyFinishEvent();
+    }
+
+    // 是否正在执行回弹或刷新动画
+    private boolean isSettling() {
+        return !mScroller.isFinished() || (mSpringScroller != null && !mSpringScroller.isFinished());
+    }
+
+    // 从当前位置动画滚动到finalScrollY
+    private void startSettle(int finalScrollY, int velocityY, int duration) {
+        int scrollY = -getDragOffset();
+        if(mSpringScroller != null) {
+            mScroller.forceFinished(true);
+            if(velocityY == 0 && !mSpringScroller.isFinished()) {
+                // 动画中途更换目标, 保持当前速度
+                mSpringScroller.retarget(finalScrollY);
+            } else {
+                mSpringScroller.startSpring(scrollY, finalScrollY, velocityY);
             }
-        }, animationDuration);
+        } else if(!flingToPosition(finalScrollY, velocityY)) {
+            mScroller.startScroll(0, scrollY, 0, finalScrollY - scrollY, duration);
+        }
+        invalidate();
+        scheduleMetricsFrame();
+    }
+
+    // 松手速度足够时, 以该速度滑动到目标位置(越过目标后回弹), 否则返回false
+    private boolean flingToPosition(int finalScrollY, int velocityY) {
+        if(Math.abs(velocityY) < mMinimumFlingVelocity) {
+            return false;
+        }
+
+        // 丢弃未完成的动画, 避免OverScroller叠加之前的速度
+        mScroller.forceFinished(true);
+        // 越过目标的距离不超过目标本身, 不会越过初始位置露出另一侧
+        int overDistance = Math.min(MAX_FLING_OVER_DISTANCE, Math.abs(finalScrollY));
+        mScroller.fling(0, -getDragOffset(), 0, velocityY, 0, 0,
+                finalScrollY, finalScrollY, 0, overDistance);
+        invalidate();
+        return true;
+    }
+
+    // 回到初初位置
+    private void resetInitialPosition(int velocityY) {
+        cancelEdgeAbsorb();
+        mDeferredStartRefreshDuration = START_REFRESH_NONE;
+        int dragOffset = getDragOffset();
+        if(mRefreshState == RefreshState.IDLE && dragOffset == 0 && !isSettling()) {
+            return;
+        }
+
+        int animationDuration = 100;
+        if (mContentView.getMeasuredHeight() > 0) {
+            animationDuration = Math.abs(400 * dragOffset / mContentView.getMeasuredHeight());
+        }
+        if(animationDuration < 100) {
+            animationDuration = 100;
+        }
+
+        setRefreshState(RefreshState.SETTLING);
+        if(dragOffset != 0 || isSettling()) {
+            startSettle(0, velocityY, animationDuration);
+        }
+
+        setScrollEndAction(SCROLL_END_FINISH);
     }
 
     // 回到下拉刷新位置
-    private void resetRefreshPosition() {
-        int animationTime = 200;
-        if(mDrawType == RefreshDrawType.OVERLAP) {
-            int fromYDelta;
-            int toYDelta;
-            int l, t, r, b;
-            if(isHeaderDragEvent()) {
-                fromYDelta = mContentView.getTop() - sHeaderSpringDistance;
-                toYDelta = 0;
-                l = mContentView.getLeft();
-                t = sHeaderSpringDistance;
-                r = l + mContentView.getMeasuredWidth();
-                b = t + mContentView.getMeasuredHeight();
-            } else {
-                fromYDelta = mContentView.getTop() + sFooterSpringDistance;
-                toYDelta = 0;
-                l = mContentView.getLeft();
-                t = -sFooterSpringDistance;
-                r = l + mContentView.getMeasuredWidth();
-                b = t + mContentView.getMeasuredHeight();
-            }
-
-            Animation animation = new TranslateAnimation(0, 0,  fromYDelta, toYDelta);
-            animation.setDuration(animationTime);
-            animation.setFillAfter(true);
-            mContentView.startAnimation(animation);
-            mContentView.layout(l, t, r, b);
-        } else if(mDrawType == RefreshDrawType.FOLLOW) {
-            if(isHeaderDragEvent()) {
-                mScroller.startScroll(0, getScrollY(), 0, -getScrollY() - sHeaderSpringDistance, animationTime);
-                invalidate();
-            } else {
-                mScroller.startScroll(0, getScrollY(), 0, -getScrollY() + sFooterSpringDistance, animationTime);
-                invalidate();
+    private void resetRefreshPosition(int velocityY, int duration) {
+        cancelEdgeAbsorb();
+        mDeferredStartRefreshDuration = START_REFRESH_NONE;
+        int refreshOffset = mRefreshState == RefreshState.REFRESHING ? sHeaderSpringDistance : -sFooterSpringDistance;
+        if(refreshOffset == 0) {
+            // header/footer还未测量, 刷新位置未知, 布局后再移动
+            mDeferredStartRefreshDuration = duration;
+            requestLayout();
+        } else if(duration > 0) {
+            startSettle(-refreshOffset, velocityY, duration);
+        } else {
+            // 不需要动画, 直接停在刷新位置
+            mScroller.forceFinished(true);
+            if(mSpringScroller != null) {
+                mSpringScroller.forceFinished();
             }
+            setDragOffset(refreshOffset);
+            invalidate();
         }
 
-        postDelayed(new Runnable() {
-            @Override
-            public void run() {
+        if(!mHasNotifiedRefresh) {
+            if(mDispatchRefreshOnRelease) {
+                // 不等待动画结束, 与回弹动画同时开始请求
                 notifyRefreshOrLoadEvent();
+            } else {
+                setScrollEndAction(SCROLL_END_REFRESH);
             }
-        }, animationTime);
+        }
     }
 
     // 判断是否滑到顶部
@@ -591,133 +1474,796 @@ public class RefreshLayout extends ViewGroup {
         return !ViewCompat.canScrollVertically(mContentView, 1);
     }
 
-    private boolean isHeaderDragEvent() {
-        switch (mDrawType) {
-            case OVERLAP:
-                return mContentView.getTop() > 0;
-            case FOLLOW:
-                return getScrollY() < 0;
+    // 重置控件到初始位置,或者刷新位置
+    private void executeResetAction() {
+        beginTraceSection(TRACE_RESET);
+        if(mMetricsListener != null) {
+            mMetrics.markRelease(System.nanoTime());
+        }
+        // 手指向下滑动时getScrollY()减小, 因此滚动速度与手指速度方向相反
+        int velocityY = (int) -mReleaseYVelocity;
+        mReleaseYVelocity = 0f;
+
+        int dragOffset = getDragOffset();
+        switch (mRefreshState) {
+            case ARMED:
+                if(mRefreshListener != null && (dragOffset > 0 || !mNoMoreData)) {
+                    startRefreshOrLoad(dragOffset > 0 ? RefreshState.REFRESHING : RefreshState.LOADING, velocityY, 200);
+                } else {
+                    resetInitialPosition(velocityY);
+                }
+                break;
+            case REFRESHING:
+                // 正在刷新时被拖动, 松手后回到刷新位置, 不会再次触发刷新
+                if(dragOffset > 0) {
+                    resetRefreshPosition(velocityY, 200);
+                } else {
+                    startSettle(0, velocityY, 200);
+                }
+                break;
+            case LOADING:
+                if(dragOffset < 0) {
+                    resetRefreshPosition(velocityY, 200);
+                } else {
+                    startSettle(0, velocityY, 200);
+                }
+                break;
             default:
-                return false;
+                resetInitialPosition(velocityY);
+                break;
         }
+        endTraceSection();
     }
 
-    private boolean isFooterDragEvent() {
-        switch (mDrawType) {
-            case OVERLAP:
-                return mContentView.getTop() < 0;
-            case FOLLOW:
-                return getScrollY() > 0;
-            default:
-                return false;
+    /** NestedScrollingParent **/
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+        return mContentView != null
+                && (mHeaderHandler != null || mFooterHandler != null)
+                && (nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) != 0;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes) {
+        mNestedScrollingParentHelper.onNestedScrollAccepted(child, target, axes);
+        startNestedScroll(axes & ViewCompat.SCROLL_AXIS_VERTICAL);
+        mNestedScrollInProgress = true;
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        // header或footer已经拉出时, 优先由RefreshLayout消耗往回滑动的距离
+        int dragOffset = getDragOffset();
+        if((dragOffset > 0 && dy > 0) || (dragOffset < 0 && dy < 0)) {
+            consumed[1] = dy;
+            queueMoveAction(-dy);
+            applyPendingMove();
+
+            int newDragOffset = getDragOffset();
+            if((dragOffset > 0 && newDragOffset < 0) || (dragOffset < 0 && newDragOffset > 0)) {
+                setDragOffset(0);
+            }
+        }
+
+        // 剩余的距离交给父View处理
+        if(dispatchNestedPreScroll(dx - consumed[0], dy - consumed[1], mParentScrollConsumed, null)) {
+            consumed[0] += mParentScrollConsumed[0];
+            consumed[1] += mParentScrollConsumed[1];
         }
     }
 
-    //判断顶部拉动是否超过临界值
-    private boolean isHeaderOverDrag(){
-        switch (mDrawType) {
-            case OVERLAP:
-                return mContentView.getTop() > sHeaderMinDragDistance;
-            case FOLLOW:
-                return (-getScrollY()) > sHeaderMinDragDistance;
-            default:
-                return false;
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
+        // 先交给父View处理, 父View未消耗的距离用于拉出header或footer
+        dispatchNestedScroll(dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed, mParentOffsetInWindow);
+
+        int dy = dyUnconsumed + mParentOffsetInWindow[1];
+        if((dy < 0 && mHeaderHandler != null && canChildScrollDown() && ensureHeaderView())
+                || (dy > 0 && mFooterHandler != null && canChildScrollUp() && ensureFooterView())) {
+            queueMoveAction(-dy);
+            applyPendingMove();
         }
     }
 
-    //判断底部拉动是否超过临界值
-    private boolean isFooterOverDrag(){
-        switch (mDrawType) {
-            case OVERLAP:
-                return (getHeight() - mContentView.getBottom()) > sFooterMinDragDistance;
-            case FOLLOW:
-                return getScrollY() > sFooterMinDragDistance;
-            default:
-                return false;
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        // header或footer已经拉出时消耗掉fling, 由松手时的回弹处理
+        if(getDragOffset() != 0) {
+            return true;
         }
+        return dispatchNestedPreFling(velocityX, velocityY);
     }
 
-    // 重置控件到初始位置,或者刷新位置
-    private void executeResetAction() {
-        if(mRefreshListener != null && notifyDragStartAnimalEvent()) {
-            resetRefreshPosition();
-        } else {
-            resetInitialPosition();
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
+        return dispatchNestedFling(velocityX, velocityY, consumed);
+    }
+
+    @Override
+    public void onStopNestedScroll(View target) {
+        mNestedScrollingParentHelper.onStopNestedScroll(target);
+        if(mNestedScrollInProgress) {
+            mNestedScrollInProgress = false;
+            if(getDragOffset() != 0) {
+                executeResetAction();
+            }
         }
+        stopNestedScroll();
+    }
+
+    @Override
+    public int getNestedScrollAxes() {
+        return mNestedScrollingParentHelper.getNestedScrollAxes();
+    }
+
+    /** NestedScrollingChild **/
+    @Override
+    public void setNestedScrollingEnabled(boolean enabled) {
+        mNestedScrollingChildHelper.setNestedScrollingEnabled(enabled);
+    }
+
+    @Override
+    public boolean isNestedScrollingEnabled() {
+        return mNestedScrollingChildHelper.isNestedScrollingEnabled();
+    }
+
+    @Override
+    public boolean startNestedScroll(int axes) {
+        return mNestedScrollingChildHelper.startNestedScroll(axes);
+    }
+
+    @Override
+    public void stopNestedScroll() {
+        mNestedScrollingChildHelper.stopNestedScroll();
+    }
+
+    @Override
+    public boolean hasNestedScrollingParent() {
+        return mNestedScrollingChildHelper.hasNestedScrollingParent();
+    }
+
+    @Override
+    public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed,
+                                        int dyUnconsumed, int[] offsetInWindow) {
+        return mNestedScrollingChildHelper.dispatchNestedScroll(dxConsumed, dyConsumed,
+                dxUnconsumed, dyUnconsumed, offsetInWindow);
+    }
+
+    @Override
+    public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow) {
+        return mNestedScrollingChildHelper.dispatchNestedPreScroll(dx, dy, consumed, offsetInWindow);
+    }
+
+    @Override
+    public boolean dispatchNestedFling(float velocityX, float velocityY, boolean consumed) {
+        return mNestedScrollingChildHelper.dispatchNestedFling(velocityX, velocityY, consumed);
+    }
+
+    @Override
+    public boolean dispatchNestedPreFling(float velocityX, float velocityY) {
+        return mNestedScrollingChildHelper.dispatchNestedPreFling(velocityX, velocityY);
     }
 
 
     /** interface **/
     // 主动调用下拉上拉刷新
     public void startRefreshAction(){
-        postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                int animationDuration = 500;
-                mCallListenerType = 1;
-                if(mDrawType == RefreshDrawType.OVERLAP) {
-                    Animation animation = new TranslateAnimation(0, 0,  mContentView.getTop() - sHeaderSpringDistance, 0);
-                    animation.setDuration(animationDuration);
-                    animation.setFillAfter(true);
-                    mContentView.startAnimation(animation);
-                    int left = mContentView.getLeft();
-                    int top = sHeaderSpringDistance;
-                    mContentView.layout(left, top, left + mContentView.getMeasuredWidth(), top + mContentView.getMeasuredHeight());
-                } else if(mDrawType == RefreshDrawType.FOLLOW) {
-                    mScroller.startScroll(0, getScrollY(), 0, -getScrollY() - sHeaderSpringDistance, animationDuration);
-                    invalidate();
-                }
+        ensureHeaderView();
+        removeCallbacks(mStartRefreshRunnable);
+        postDelayed(mStartRefreshRunnable, 200L);
+    }
 
-                if(mHeaderHandler != null) {
-                    mHeaderHandler.onDragStartAnim();
+    /**
+     * 立即开始刷新并通知RefreshListener, 可以在任意线程调用.
+     * 还未完成测量时, 等到第一次布局后再开始
+     * @param duration header弹出的动画时长(毫秒), 小于等于0直接显示在刷新位置
+     */
+    public void startRefresh(int duration) {
+        duration = Math.max(duration, 0);
+        if(Looper.myLooper() == Looper.getMainLooper()) {
+            mPendingStartRefreshDuration.set(START_REFRESH_NONE);
+            mMainHandler.removeCallbacks(mPendingStartRefreshRunnable);
+            startRefreshOrDefer(duration);
+        } else if(mPendingStartRefreshDuration.getAndSet(duration) == START_REFRESH_NONE) {
+            mMainHandler.post(mPendingStartRefreshRunnable);
+        }
+    }
+
+    private final Runnable mPendingStartRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            int duration = mPendingStartRefreshDuration.getAndSet(START_REFRESH_NONE);
+            if(duration != START_REFRESH_NONE) {
+                startRefreshOrDefer(duration);
+            }
+        }
+    };
+
+    private final Runnable mDeferredStartRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if(mDeferredStartRefreshDuration != START_REFRESH_NONE && canStartRefreshNow()) {
+                int duration = mDeferredStartRefreshDuration;
+                mDeferredStartRefreshDuration = START_REFRESH_NONE;
+                if(mRefreshState == RefreshState.REFRESHING) {
+                    // 已经开始刷新, 只差移动到刷新位置
+                    resetRefreshPosition(0, duration);
+                } else {
+                    startRefreshNow(duration);
                 }
+            }
+        }
+    };
+
+    private void startRefreshOrDefer(int duration) {
+        removeCallbacks(mStartRefreshRunnable);
+        removeCallbacks(mDeferredStartRefreshRunnable);
+        mDeferredStartRefreshDuration = START_REFRESH_NONE;
+        if(mContentView != null && ensureHeaderView()) {
+            // header还未测量时同样立即开始刷新, 只有移动到刷新位置等待布局
+            startRefreshNow(duration);
+        } else {
+            mDeferredStartRefreshDuration = duration;
+            requestLayout();
+        }
+    }
+
+    // header已经测量, 刷新位置已知
+    private boolean canStartRefreshNow() {
+        return mContentView != null && isHeaderReady() && sHeaderSpringDistance > 0;
+    }
+
+    private void startRefreshNow(int duration) {
+        if(mRefreshState == RefreshState.REFRESHING || mRefreshState == RefreshState.LOADING) {
+            return;
+        }
+
+        cancelEdgeAbsorb();
+        startRefreshOrLoad(RefreshState.REFRESHING, 0, duration);
+        // 不等待动画结束
+        notifyRefreshOrLoadEvent();
+    }
+
+    /**
+     * 记录上次刷新成功的时间并在显示时自动刷新, 时间保存在本地, 相同key的RefreshLayout共享.
+     * 添加到窗口时, 若距上次刷新超过ttl则自动刷新. 保存的时间在后台线程读取, 读取完成前视为过期
+     * @param key 区分不同页面的id, 为null时关闭
+     * @param ttl 数据的有效时长(毫秒)
+     */
+    public void setAutoRefresh(String key, long ttl) {
+        mRefreshTimeKey = key;
+        mRefreshTimeToLive = ttl;
+        mLastRefreshTime = 0;
+        mRefreshTimeLoaded = false;
+        if(key == null) {
+            return;
+        }
+
+        Long time = sRefreshTimes.get(key);
+        if(time != null) {
+            onLastRefreshTimeLoaded(key, time);
+        } else {
+            loadLastRefreshTime(key);
+        }
+    }
+
+    // 上次刷新成功的时间, 0表示从未刷新或未设置key
+    public long getLastRefreshTime() {
+        return mLastRefreshTime;
+    }
+
+    // 距上次刷新成功是否已经超过ttl, 未设置key时总是返回true
+    public boolean isRefreshStale() {
+        if(mRefreshTimeKey == null || mLastRefreshTime <= 0) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        // 系统时间被调早时也认为已经过期
+        return now < mLastRefreshTime || now - mLastRefreshTime >= mRefreshTimeToLive;
+    }
+
+    /**
+     * 数据已过期时才开始刷新
+     * @return 开始刷新时返回true
+     */
+    public boolean startRefreshIfStale(int duration) {
+        if(!isRefreshStale()) {
+            return false;
+        }
 
-                postDelayed(new Runnable() {
+        startRefresh(duration);
+        return true;
+    }
+
+    private SharedPreferences getRefreshTimePreferences() {
+        return getContext().getSharedPreferences(REFRESH_TIME_PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    // 读取SharedPreferences需要访问磁盘, 在后台线程进行, 不阻塞启动
+    private void loadLastRefreshTime(final String key) {
+        final Context context = getContext().getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final long time = context.getSharedPreferences(REFRESH_TIME_PREFERENCES, Context.MODE_PRIVATE).getLong(key, 0);
+                mMainHandler.post(new Runnable() {
                     @Override
                     public void run() {
-                        notifyRefreshOrLoadEvent();
+                        if(!sRefreshTimes.containsKey(key)) {
+                            // 读取期间可能已经保存了新的时间
+                            sRefreshTimes.put(key, time);
+                        }
+                        onLastRefreshTimeLoaded(key, sRefreshTimes.get(key));
                     }
-                }, animationDuration + 200L);
+                });
             }
-        }, 200L);
+        }, "RefreshLayout-time").start();
     }
 
-    // 完成下拉刷新或者上拉加载动作
+    private void onLastRefreshTimeLoaded(String key, long time) {
+        if(!key.equals(mRefreshTimeKey) || mRefreshTimeLoaded) {
+            return;
+        }
+
+        mLastRefreshTime = time;
+        mRefreshTimeLoaded = true;
+        notifyLastRefreshTime();
+        if(mAttached) {
+            startRefreshIfStale(AUTO_REFRESH_DURATION);
+        }
+    }
+
+    private void saveLastRefreshTime(long time) {
+        if(mRefreshTimeKey == null) {
+            return;
+        }
+
+        mLastRefreshTime = time;
+        mRefreshTimeLoaded = true;
+        sRefreshTimes.put(mRefreshTimeKey, time);
+        SharedPreferences.Editor editor = getRefreshTimePreferences().edit().putLong(mRefreshTimeKey, time);
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+            editor.apply();
+        } else {
+            editor.commit();
+        }
+        notifyLastRefreshTime();
+    }
+
+    private void notifyLastRefreshTime() {
+        if(isHeaderReady() && mHeaderHandler instanceof LastRefreshTimeHandler) {
+            ((LastRefreshTimeHandler) mHeaderHandler).onLastRefreshTime(mLastRefreshTime);
+        }
+    }
+
+    // 完成下拉刷新或者上拉加载动作, 可以在任意线程调用
     public void onRefreshComplete() {
-        if(!mDealWithMoveAction && (isHeaderDragEvent() || isFooterDragEvent())) {
-            post(new Runnable() {
-                @Override
-                public void run() {
-                    resetInitialPosition();
+        requestRefreshComplete(COMPLETE_ANY);
+    }
+
+    // 记录完成请求, 同一时间只向主线程投递一次
+    void requestRefreshComplete(int generation) {
+        while (true) {
+            int pending = mPendingCompleteGeneration.get();
+            if(pending >= generation) {
+                return;
+            }
+            if(mPendingCompleteGeneration.compareAndSet(pending, generation)) {
+                if(pending == COMPLETE_NONE) {
+                    mMainHandler.post(mRefreshCompleteRunnable);
                 }
-            });
+                return;
+            }
+        }
+    }
+
+    public RefreshState getRefreshState() {
+        return mRefreshState;
+    }
+
+    public void setRefreshStateListener(RefreshStateListener listener) {
+        mRefreshStateListener = listener;
+    }
+
+    // 设置帧耗时统计的回调, 为空时不做任何统计
+    public void setRefreshMetricsListener(RefreshMetricsListener listener) {
+        mMetricsListener = listener;
+        if(listener != null) {
+            scheduleMetricsFrame();
+        }
+    }
+
+    /**
+     * 设置每帧的时间预算, 默认60fps
+     * @param frameBudget 纳秒
+     */
+    public void setMetricsFrameBudget(long frameBudget) {
+        mMetrics.setFrameBudget(frameBudget);
+    }
+
+    private final Runnable mStartRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if(mRefreshState == RefreshState.REFRESHING || mRefreshState == RefreshState.LOADING) {
+                return;
+            }
+
+            cancelEdgeAbsorb();
+            startRefreshOrLoad(RefreshState.REFRESHING, 0, 500);
+        }
+    };
+
+    private final Runnable mRefreshCompleteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            int generation = mPendingCompleteGeneration.getAndSet(COMPLETE_NONE);
+            if(generation < mRefreshGeneration) {
+                // 过期的RefreshTicket
+                return;
+            }
+            if(generation == COMPLETE_ANY) {
+                // 未使用RefreshTicket时, onRefreshComplete()同时结束预加载
+                mPrefetchInFlight = false;
+            }
+            if(mRefreshState == RefreshState.REFRESHING) {
+                saveLastRefreshTime(System.currentTimeMillis());
+            }
+            beginTraceSection(TRACE_COMPLETE);
+            completeRefreshOrLoad();
+            endTraceSection();
+        }
+    };
+
+    private final Runnable mRefreshTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            timeoutRefreshOrLoad();
+        }
+    };
+
+    // 刷新或加载超时: 丢弃本次请求, 通知失败后弹回
+    private void timeoutRefreshOrLoad() {
+        if(mRefreshState != RefreshState.REFRESHING && mRefreshState != RefreshState.LOADING) {
+            return;
         }
+
+        boolean loadMore = mRefreshState == RefreshState.LOADING;
+        // 之后到达的RefreshTicket视为过期, 未发出的通知也不再发出
+        mRefreshGeneration++;
+        mHasNotifiedRefresh = true;
+        if(mScrollEndAction == SCROLL_END_REFRESH || mScrollEndAction == SCROLL_END_COMPLETE) {
+            mScrollEndAction = SCROLL_END_NONE;
+        }
+        removeCallbacks(mNotifyRefreshRunnable);
+        removeCallbacks(mCompleteRefreshRunnable);
+        if(mLoadingFollowsPrefetch) {
+            // 等待的预加载同样超时
+            mLoadingFollowsPrefetch = false;
+            mPrefetchInFlight = false;
+            mPrefetchGeneration++;
+        }
+
+        RefreshHandler handler = loadMore ? mFooterHandler : mHeaderHandler;
+        if(handler instanceof RefreshFailedHandler) {
+            ((RefreshFailedHandler) handler).onRefreshFailed();
+        }
+        if(mRefreshListener != null) {
+            mRefreshListener.onRefreshTimeout(loadMore);
+        }
+        completeRefreshOrLoad();
+    }
+
+    private void completeRefreshOrLoad() {
+        if(mRefreshState != RefreshState.REFRESHING && mRefreshState != RefreshState.LOADING) {
+            return;
+        }
+
+        if(mMetricsListener != null) {
+            mMetrics.markComplete(System.nanoTime());
+        }
+
+        mHasPendingComplete = false;
+        if(!mAttached) {
+            // 不在窗口中时不会执行动画, 直接弹回
+            setRefreshState(RefreshState.SETTLING);
+            finishSettleNow();
+            return;
+        }
+
+        if(isSettling() && mScrollEndAction == SCROLL_END_NONE) {
+            // 请求比回弹动画先结束, 等动画到达刷新位置后再弹回
+            mHasPendingComplete = true;
+            setScrollEndAction(SCROLL_END_COMPLETE);
+            return;
+        }
+
+        if(mActivePointerId != MotionEvent.INVALID_POINTER_ID || mNestedScrollInProgress) {
+            // 手指仍在拖动, 松手后再弹回
+            setRefreshState(RefreshState.SETTLING);
+        } else {
+            resetInitialPosition(0);
+        }
+    }
+
+    private final ViewTreeObserver.OnScrollChangedListener mOnScrollChangedListener
+            = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            checkLoadMorePrefetch();
+        }
+    };
+
+    private final Runnable mPrefetchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if(mPrefetchInFlight && mRefreshListener != null) {
+                mRefreshListener.onLoadMoreEvent(new RefreshTicket(RefreshLayout.this, mPrefetchGeneration, true, true));
+            } else {
+                mPrefetchInFlight = false;
+            }
+        }
+    };
+
+    // 内容滚动时检查是否需要预加载
+    private void checkLoadMorePrefetch() {
+        if((mPrefetchDistance <= 0 && mPrefetchItemCount <= 0) || mContentView == null || mRefreshListener == null
+                || mNoMoreData || mPrefetchInFlight || mRefreshState != RefreshState.IDLE || getDragOffset() != 0) {
+            return;
+        }
+
+        boolean shouldPrefetch = false;
+        int remainingItemCount = mPrefetchItemCount > 0 ? getRemainingItemCount() : -1;
+        if(remainingItemCount >= 0) {
+            shouldPrefetch = remainingItemCount <= mPrefetchItemCount;
+        } else if(mPrefetchDistance > 0) {
+            shouldPrefetch = getRemainingScrollDistance() <= mPrefetchDistance;
+        }
+
+        if(shouldPrefetch) {
+            mPrefetchInFlight = true;
+            mPrefetchGeneration++;
+            // 滚动回调可能在绘制过程中, 不在这里直接回调RefreshListener
+            post(mPrefetchRunnable);
+        }
+    }
+
+    // 剩余未显示的条目数, 无法计算时返回-1
+    private int getRemainingItemCount() {
+        if(mRemainingItemCounter != null) {
+            return mRemainingItemCounter.getRemainingItemCount(mContentView);
+        }
+        if(mContentView instanceof AbsListView) {
+            AbsListView listView = (AbsListView) mContentView;
+            if(listView.getCount() == 0) {
+                return -1;
+            }
+            return listView.getCount() - 1 - listView.getLastVisiblePosition();
+        }
+        return -1;
+    }
+
+    // 内容还能向下滚动的距离
+    private int getRemainingScrollDistance() {
+        if(!ViewCompat.canScrollVertically(mContentView, 1)) {
+            return 0;
+        }
+
+        if(mContentView instanceof ScrollingView) {
+            ScrollingView scrollingView = (ScrollingView) mContentView;
+            return scrollingView.computeVerticalScrollRange() - scrollingView.computeVerticalScrollOffset()
+                    - scrollingView.computeVerticalScrollExtent();
+        }
+        if(mContentView instanceof AbsListView) {
+            AbsListView listView = (AbsListView) mContentView;
+            int childCount = listView.getChildCount();
+            if(childCount == 0 || listView.getLastVisiblePosition() < listView.getCount() - 1) {
+                return Integer.MAX_VALUE;
+            }
+            return listView.getChildAt(childCount - 1).getBottom() - listView.getHeight() + listView.getPaddingBottom();
+        }
+        if(mContentView instanceof ViewGroup && ((ViewGroup) mContentView).getChildCount() > 0) {
+            // ScrollView等只有一个子View的容器
+            View child = ((ViewGroup) mContentView).getChildAt(0);
+            return child.getBottom() - mContentView.getScrollY() - mContentView.getHeight()
+                    + mContentView.getPaddingBottom();
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    // 预加载完成, 可以在任意线程调用
+    void requestPrefetchComplete(final int generation) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if(!mPrefetchInFlight || generation != mPrefetchGeneration) {
+                    return;
+                }
+
+                mPrefetchInFlight = false;
+                if(mRefreshState == RefreshState.LOADING && mLoadingFollowsPrefetch) {
+                    completeRefreshOrLoad();
+                }
+            }
+        });
+    }
+
+    /**
+     * 内容距离底部还有distance像素时提前通知加载更多
+     * @param distance 小于等于0关闭按距离预加载
+     */
+    public void setLoadMorePrefetchDistance(int distance) {
+        mPrefetchDistance = distance;
+    }
+
+    /**
+     * 内容距离底部还有itemCount个条目时提前通知加载更多, 优先于按距离预加载.
+     * AbsListView可以直接计算, 其他内容(如RecyclerView)需要设置{@link RemainingItemCounter}
+     * @param itemCount 小于等于0关闭按条目预加载
+     */
+    public void setLoadMorePrefetchItemCount(int itemCount) {
+        mPrefetchItemCount = itemCount;
+    }
+
+    public void setRemainingItemCounter(RemainingItemCounter counter) {
+        mRemainingItemCounter = counter;
+    }
+
+    /**
+     * 设置是否已经没有更多数据, 为true时不再预加载, 上拉也不会触发加载更多
+     */
+    public void setNoMoreData(boolean noMoreData) {
+        mNoMoreData = noMoreData;
+    }
+
+    public boolean isNoMoreData() {
+        return mNoMoreData;
     }
 
     private View mHeaderView;
     private View mFooterView;
+    private RefreshDrawable mHeaderDrawable;
+    private RefreshDrawable mFooterDrawable;
+    private HandlerInflateMode mHeaderInflateMode = HandlerInflateMode.IMMEDIATE;
+    private HandlerInflateMode mFooterInflateMode = HandlerInflateMode.IMMEDIATE;
+    private boolean mIdleInflateScheduled;
+    private int mLastWidthMeasureSpec;
+    private int mLastHeightMeasureSpec;
+    private boolean mDragDistancesDirty = true;
+    private int mResolvedHeaderHeight = -1;
+    private int mResolvedFooterHeight = -1;
+
     public void setHeader(@NonNull RefreshHandler headerHandler) {
+        setHeader(headerHandler, HandlerInflateMode.IMMEDIATE);
+    }
+
+    /**
+     * @param inflateMode header视图的创建时机, 延迟创建可以减少首帧的耗时
+     */
+    public void setHeader(@NonNull RefreshHandler headerHandler, HandlerInflateMode inflateMode) {
         if(mHeaderHandler == null || mHeaderView == null) {
-            headerHandler.initHandlerView(this);
-            mHeaderView = getChildAt(getChildCount() - 1);
-            mHeaderView.setVisibility(VISIBLE);
             mHeaderHandler = headerHandler;
-            mContentView.bringToFront();
-            requestLayout();
+            mHeaderInflateMode = inflateMode;
+            mDragDistancesDirty = true;
+            mHeaderDrawable = headerHandler instanceof RefreshDrawable ? (RefreshDrawable) headerHandler : null;
+            if(mHeaderDrawable != null) {
+                // 直接绘制, 不需要创建View
+                if(mRefreshTimeKey != null) {
+                    notifyLastRefreshTime();
+                }
+                requestLayout();
+            } else if(inflateMode == HandlerInflateMode.IMMEDIATE) {
+                ensureHeaderView();
+            } else if(inflateMode == HandlerInflateMode.IDLE) {
+                scheduleIdleInflate();
+            }
         }
     }
 
     public void setFooter(@NonNull RefreshHandler footerHandler) {
+        setFooter(footerHandler, HandlerInflateMode.IMMEDIATE);
+    }
+
+    /**
+     * @param inflateMode footer视图的创建时机, 延迟创建可以减少首帧的耗时
+     */
+    public void setFooter(@NonNull RefreshHandler footerHandler, HandlerInflateMode inflateMode) {
         if(mFooterHandler == null || mFooterView == null) {
-            footerHandler.initHandlerView(this);
-            mFooterView = getChildAt(getChildCount() - 1);
-            mFooterView.setVisibility(VISIBLE);
             mFooterHandler = footerHandler;
-            mContentView.bringToFront();
-            requestLayout();
+            mFooterInflateMode = inflateMode;
+            mDragDistancesDirty = true;
+            mFooterDrawable = footerHandler instanceof RefreshDrawable ? (RefreshDrawable) footerHandler : null;
+            if(mFooterDrawable != null) {
+                requestLayout();
+            } else if(inflateMode == HandlerInflateMode.IMMEDIATE) {
+                ensureFooterView();
+            } else if(inflateMode == HandlerInflateMode.IDLE) {
+                scheduleIdleInflate();
+            }
+        }
+    }
+
+    // 需要时创建header视图, 返回是否有header
+    private boolean ensureHeaderView() {
+        if(mHeaderView != null || mHeaderDrawable != null) {
+            return true;
+        }
+        if(mHeaderHandler == null) {
+            return false;
+        }
+
+        mHeaderView = inflateHandlerView(mHeaderHandler);
+        prepareHandlerView(mHeaderView);
+        if(mRefreshTimeKey != null) {
+            notifyLastRefreshTime();
+        }
+        return true;
+    }
+
+    // 需要时创建footer视图, 返回是否有footer
+    private boolean ensureFooterView() {
+        if(mFooterView != null || mFooterDrawable != null) {
+            return true;
+        }
+        if(mFooterHandler == null) {
+            return false;
         }
+
+        mFooterView = inflateHandlerView(mFooterHandler);
+        prepareHandlerView(mFooterView);
+        return true;
     }
 
+    private View inflateHandlerView(RefreshHandler handler) {
+        int childCount = getChildCount();
+        View handlerView = handler.initHandlerView(this);
+        if(handlerView == null || handlerView == this || handlerView.getParent() != null) {
+            // inflate到RefreshLayout时返回的是RefreshLayout本身, 取新加入的子View
+            if(handlerView == null || handlerView.getParent() != this) {
+                if(getChildCount() <= childCount) {
+                    throw new IllegalStateException("RefreshHandler.initHandlerView() must provide a view");
+                }
+                handlerView = getChildAt(childCount);
+            }
+            removeView(handlerView);
+        }
+        // 放在内容View之前, 内容View总是最后绘制, OVERLAP模式下盖在header/footer之上;
+        // API 21以下按子View顺序分发触摸事件, 被盖住的header/footer也不会先收到点击
+        addView(handlerView, 0);
+        handlerView.setVisibility(VISIBLE);
+        return handlerView;
+    }
+
+    // 拖动过程中创建时立即测量并布局, 本次拖动就能使用. 需要在mHeaderView/mFooterView赋值后调用
+    private void prepareHandlerView(View handlerView) {
+        if(getMeasuredWidth() > 0) {
+            measureChild(handlerView, mLastWidthMeasureSpec, mLastHeightMeasureSpec);
+            resolveDragDistances();
+            layoutHandlerViews(getWidth(), getHeight());
+        }
+    }
+
+    private void scheduleIdleInflate() {
+        if(!mIdleInflateScheduled) {
+            mIdleInflateScheduled = true;
+            Looper.myQueue().addIdleHandler(mIdleInflateHandler);
+        }
+    }
+
+    private final MessageQueue.IdleHandler mIdleInflateHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mIdleInflateScheduled = false;
+            if(mHeaderInflateMode == HandlerInflateMode.IDLE) {
+                ensureHeaderView();
+            }
+            if(mFooterInflateMode == HandlerInflateMode.IDLE) {
+                ensureFooterView();
+            }
+            return false;
+        }
+    };
+
     public RefreshHandler getHeader() {
         return mHeaderHandler;
     }
@@ -736,6 +2282,93 @@ public class RefreshLayout extends ViewGroup {
 
     public void setDrawType(RefreshDrawType type) {
         mDrawType = type;
+        invalidate();
+    }
+
+    // 是否使用ACTION_MOVE中批量的历史采样点计算拖动阻尼(高采样率的触摸屏上更平滑)
+    public void setHistoricalMoveEnabled(boolean enabled) {
+        applyPendingMove();
+        mHistoricalMoveEnabled = enabled;
+    }
+
+    // 设置下拉时的阻尼曲线, 为空时使用默认的线性阻尼
+    public void setHeaderDragResistance(DragResistance dragResistance) {
+        mHeaderDragResistance = dragResistance != null ? dragResistance : new DragResistance.Linear();
+    }
+
+    // 设置上拉时的阻尼曲线, 为空时使用默认的线性阻尼
+    public void setFooterDragResistance(DragResistance dragResistance) {
+        mFooterDragResistance = dragResistance != null ? dragResistance : new DragResistance.Linear();
+    }
+
+    // 设置回弹及刷新动画使用的弹簧动画, 为空时使用默认的固定时长动画
+    public void setSpringScroller(SpringScroller springScroller) {
+        if(mSpringScroller != null && !mSpringScroller.isFinished()) {
+            mSpringScroller.abortAnimation();
+            setDragOffset(-mSpringScroller.getFinalY());
+        }
+        mSpringScroller = springScroller;
+    }
+
+    // 内容View fling到顶部或底部时, 是否将剩余速度转为header/footer的回弹
+    public void setEdgeAbsorbEnabled(boolean enabled) {
+        mEdgeAbsorbEnabled = enabled;
+        if(!enabled) {
+            cancelEdgeAbsorb();
+        }
+    }
+
+    /**
+     * 松手触发刷新时是否立即通知RefreshListener, 回弹动画同时进行;
+     * 请求在动画结束前完成时, 等动画结束后再弹回
+     */
+    public void setDispatchRefreshOnRelease(boolean enabled) {
+        mDispatchRefreshOnRelease = enabled;
+    }
+
+    /**
+     * 设置刷新或加载的超时时间, 超时后header/footer弹回并回调
+     * {@link RefreshListener#onRefreshTimeout(boolean)}, 之后再调用complete不再有效果
+     * @param timeout 毫秒, 小于等于0不超时
+     */
+    public void setRefreshTimeout(long timeout) {
+        mRefreshTimeout = timeout;
+        if(timeout <= 0) {
+            mMainHandler.removeCallbacks(mRefreshTimeoutRunnable);
+        }
+    }
+
+    /**
+     * 拖动及回弹过程中header/footer是否使用硬件层, 适合内容静态但绘制复杂的header/footer.
+     * 刷新等待期间及header/footer自身在重绘时不使用
+     */
+    public void setHandlerLayerEnabled(boolean enabled) {
+        mHandlerLayerEnabled = enabled;
+        if(!enabled) {
+            mHeaderLayerType = restoreLayerType(mHeaderView, mHeaderLayerType);
+            mFooterLayerType = restoreLayerType(mFooterView, mFooterLayerType);
+        }
+    }
+
+    /**
+     * 拖动及回弹过程中内容View是否使用硬件层, 内容View自身在重绘时不使用
+     */
+    public void setContentLayerEnabled(boolean enabled) {
+        mContentLayerEnabled = enabled;
+        if(!enabled) {
+            mContentLayerType = restoreLayerType(mContentView, mContentLayerType);
+        }
+    }
+
+    // 回弹时footer完全露出是否直接触发加载更多
+    public void setEdgeAbsorbLoadMoreEnabled(boolean enabled) {
+        mEdgeAbsorbLoadMoreEnabled = enabled;
+    }
+
+    // 是否将拖动合并到每一帧只处理一次(高频触摸事件时减少重复的滚动/布局及回调)
+    public void setFrameAlignedMoveEnabled(boolean enabled) {
+        applyPendingMove();
+        mFrameAlignedMoveEnabled = enabled;
     }
 
     public void setRefreshListener(RefreshListener listener) {
@@ -743,15 +2376,78 @@ public class RefreshLayout extends ViewGroup {
     }
 
     public interface RefreshListener {
-        void onRefreshEvent();
-        void onLoadMoreEvent();
+        /**
+         * 开始下拉刷新
+         * @param ticket 刷新结束后调用{@link RefreshTicket#complete()}
+         */
+        void onRefreshEvent(RefreshTicket ticket);
+
+        /**
+         * 开始上拉加载更多
+         * @param ticket 加载结束后调用{@link RefreshTicket#complete()}
+         */
+        void onLoadMoreEvent(RefreshTicket ticket);
+
+        /**
+         * 刷新或加载超时, header/footer已开始弹回
+         * @param loadMore true表示上拉加载更多超时
+         */
+        void onRefreshTimeout(boolean loadMore);
+    }
+
+    // 计算内容剩余未显示的条目数, 用于预加载
+    public interface RemainingItemCounter {
+        /**
+         * @param contentView 内容视图
+         * @return 最后一个可见条目之后还有多少条目, 无法计算时返回-1
+         */
+        int getRemainingItemCount(View contentView);
+    }
+
+    /**
+     * 是否输出systrace的section, 默认关闭, 关闭时没有额外开销.
+     * 刷新请求进行中的时间段为notifyRefreshEvent与onRefreshComplete两个section之间.
+     * 应在初始化时设置, 避免在section进行中切换
+     */
+    public static void setTraceEnabled(boolean enabled) {
+        sTraceEnabled = enabled;
+    }
+
+    private static void beginTraceSection(String sectionName) {
+        if(sTraceEnabled) {
+            TraceCompat.beginSection(sectionName);
+        }
+    }
+
+    private static void endTraceSection() {
+        if(sTraceEnabled) {
+            TraceCompat.endSection();
+        }
+    }
+
+    public interface RefreshMetricsListener {
+        /**
+         * 一次拖动或刷新结束(回到IDLE)时回调
+         * @param metrics 本次的统计数据, 下一次拖动或刷新开始时会被清空重用
+         */
+        void onRefreshMetrics(RefreshMetrics metrics);
+    }
+
+    public interface RefreshStateListener {
+        /**
+         * 刷新状态发生变化
+         * @param oldState 变化前的状态
+         * @param newState 变化后的状态
+         */
+        void onRefreshStateChanged(RefreshState oldState, RefreshState newState);
     }
 
     // 下拉刷新与上接加载的header与footer
     public interface RefreshHandler {
 
         /**
-         * 获取操作的header或者footer视图
+         * 获取操作的header或者footer视图, 可以直接添加到parentView中,
+         * 也可以返回未添加的View由RefreshLayout添加
          * @return 实际操作的View
          */
         View initHandlerView(ViewGroup parentView);
@@ -801,4 +2497,25 @@ public class RefreshLayout extends ViewGroup {
          */
         void onDragFinishAnim();
     }
+
+    /**
+     * header/footer需要显示刷新失败时可以同时实现此接口
+     */
+    public interface RefreshFailedHandler {
+        /**
+         * 刷新或加载超时失败, 随后会弹回
+         */
+        void onRefreshFailed();
+    }
+
+    /**
+     * header需要显示上次刷新时间时可以同时实现此接口
+     */
+    public interface LastRefreshTimeHandler {
+        /**
+         * 上次刷新成功的时间, 设置了{@link RefreshLayout#setAutoRefresh(String, long)}后才会回调
+         * @param timeMillis 0表示从未刷新
+         */
+        void onLastRefreshTime(long timeMillis);
+    }
 }
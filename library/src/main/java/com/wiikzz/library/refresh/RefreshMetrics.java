@@ -0,0 +1,134 @@
+package com.wiikzz.library.refresh;
+
+/**
+ * Created by wiikii on 16/9/25.
+ * Copyright (C) 2014 wiikii. All rights reserved.
+ *
+ * 一次拖动或刷新过程的帧耗时统计, 由{@link RefreshLayout.RefreshMetricsListener}回调.
+ * 对象会被重复使用, 下一次拖动或刷新开始(离开IDLE)时数据即被清空, 需要保存时请复制其中的数值.
+ * 时间单位均为纳秒, 未发生的阶段为-1.
+ */
+public final class RefreshMetrics {
+    public static final long DEFAULT_FRAME_BUDGET = 16666667L; // 60fps
+    private static final int MAX_RECENT_FRAMES = 120;
+
+    private final long[] mRecentFrameTimes = new long[MAX_RECENT_FRAMES]; // 最近帧耗时的环形缓冲
+    private int mRecentFrameIndex;
+    private int mRecentFrameCount;
+
+    private long mFrameBudget = DEFAULT_FRAME_BUDGET;
+    private int mFrameCount;
+    private int mJankFrameCount;
+    private long mMaxFrameTime;
+
+    private long mReleaseTime = -1;
+    private long mReleaseToRefresh = -1;
+    private long mReleaseToComplete = -1;
+    private long mReleaseToFinish = -1;
+
+    void setFrameBudget(long frameBudget) {
+        mFrameBudget = frameBudget;
+    }
+
+    void reset() {
+        mRecentFrameIndex = 0;
+        mRecentFrameCount = 0;
+        mFrameCount = 0;
+        mJankFrameCount = 0;
+        mMaxFrameTime = 0;
+        mReleaseTime = -1;
+        mReleaseToRefresh = -1;
+        mReleaseToComplete = -1;
+        mReleaseToFinish = -1;
+    }
+
+    void recordFrame(long frameTime) {
+        mRecentFrameTimes[mRecentFrameIndex] = frameTime;
+        mRecentFrameIndex = (mRecentFrameIndex + 1) % MAX_RECENT_FRAMES;
+        if(mRecentFrameCount < MAX_RECENT_FRAMES) {
+            mRecentFrameCount++;
+        }
+
+        mFrameCount++;
+        // 超过1.5倍预算即错过了一次垂直同步
+        if(frameTime * 2 > mFrameBudget * 3) {
+            mJankFrameCount++;
+        }
+        if(frameTime > mMaxFrameTime) {
+            mMaxFrameTime = frameTime;
+        }
+    }
+
+    void markRelease(long time) {
+        if(mReleaseTime < 0) {
+            mReleaseTime = time;
+        }
+    }
+
+    void markRefresh(long time) {
+        if(mReleaseTime >= 0 && mReleaseToRefresh < 0) {
+            mReleaseToRefresh = time - mReleaseTime;
+        }
+    }
+
+    void markComplete(long time) {
+        if(mReleaseTime >= 0 && mReleaseToComplete < 0) {
+            mReleaseToComplete = time - mReleaseTime;
+        }
+    }
+
+    void markFinish(long time) {
+        if(mReleaseTime >= 0 && mReleaseToFinish < 0) {
+            mReleaseToFinish = time - mReleaseTime;
+        }
+    }
+
+    // 统计的总帧数
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    // 耗时超过帧预算(错过垂直同步)的帧数
+    public int getJankFrameCount() {
+        return mJankFrameCount;
+    }
+
+    public long getMaxFrameTime() {
+        return mMaxFrameTime;
+    }
+
+    public long getFrameBudget() {
+        return mFrameBudget;
+    }
+
+    // 松手到通知RefreshListener开始刷新
+    public long getReleaseToRefreshTime() {
+        return mReleaseToRefresh;
+    }
+
+    // 松手到刷新完成(超时也视为完成)
+    public long getReleaseToCompleteTime() {
+        return mReleaseToComplete;
+    }
+
+    // 松手到header/footer完全弹回
+    public long getReleaseToFinishTime() {
+        return mReleaseToFinish;
+    }
+
+    // 最近记录的帧数, 最多120帧
+    public int getRecentFrameCount() {
+        return mRecentFrameCount;
+    }
+
+    /**
+     * @param index 0为最早的一帧
+     */
+    public long getRecentFrameTime(int index) {
+        if(index < 0 || index >= mRecentFrameCount) {
+            throw new IndexOutOfBoundsException("index " + index + ", count " + mRecentFrameCount);
+        }
+        int start = mRecentFrameCount < MAX_RECENT_FRAMES ? 0 : mRecentFrameIndex;
+        return mRecentFrameTimes[(start + index) % MAX_RECENT_FRAMES];
+    }
+}
@@ -0,0 +1,70 @@
+package com.wiikzz.library.refresh;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by wiikii on 16/9/22.
+ * Copyright (C) 2014 wiikii. All rights reserved.
+ *
+ * 一次刷新或加载更多的凭证, 由{@link RefreshLayout.RefreshListener}回调时传入.
+ * 同一次刷新有多个并行请求时, 每多一个请求调用一次{@link #retain()},
+ * 每个请求结束时各自调用{@link #complete()}, 全部结束后header/footer才会弹回.
+ * 可以在任意线程调用, 过期的凭证(已经开始了新的刷新)不会影响当前的刷新.
+ */
+public final class RefreshTicket {
+    private final RefreshLayout mRefreshLayout;
+    private final int mGeneration;
+    private final boolean mLoadMore;
+    private final boolean mPrefetch;
+    private final AtomicInteger mPendingCount = new AtomicInteger(1);
+
+    RefreshTicket(RefreshLayout refreshLayout, int generation, boolean loadMore, boolean prefetch) {
+        mRefreshLayout = refreshLayout;
+        mGeneration = generation;
+        mLoadMore = loadMore;
+        mPrefetch = prefetch;
+    }
+
+    /**
+     * 增加一个需要等待的请求
+     * @return 当前凭证, 方便链式调用
+     */
+    public RefreshTicket retain() {
+        mPendingCount.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * 结束一个请求, 所有请求都结束后完成本次刷新
+     */
+    public void complete() {
+        if(mPendingCount.decrementAndGet() == 0) {
+            if(mPrefetch) {
+                mRefreshLayout.requestPrefetchComplete(mGeneration);
+            } else {
+                mRefreshLayout.requestRefreshComplete(mGeneration);
+            }
+        }
+    }
+
+    /**
+     * @return 所有请求都已结束时返回true
+     */
+    public boolean isCompleted() {
+        return mPendingCount.get() <= 0;
+    }
+
+    /**
+     * @return 上拉加载更多时返回true, 下拉刷新时返回false
+     */
+    public boolean isLoadMore() {
+        return mLoadMore;
+    }
+
+    /**
+     * @return 内容快滚动到底部时的预加载返回true, 此时footer不会显示
+     */
+    public boolean isPrefetch() {
+        return mPrefetch;
+    }
+}
@@ -0,0 +1,127 @@
+package com.wiikzz.library.refresh;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+/**
+ * Created by wiikii on 16/9/24.
+ * Copyright (C) 2014 wiikii. All rights reserved.
+ *
+ * 内置的RefreshDrawable: 拖动时显示箭头, 超过临界点后箭头翻转, 刷新时显示旋转的圆弧.
+ */
+public class SpinnerRefreshDrawable extends RefreshDrawable {
+    private static final int DEFAULT_HEIGHT = 56; // dp
+    private static final int SPINNER_RADIUS = 10; // dp
+    private static final float STROKE_WIDTH = 2.5f; // dp
+    private static final int ROTATE_DURATION = 1000; // 圆弧旋转一圈的时长
+    private static final int FLIP_DURATION = 150; // 箭头翻转的时长
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path mArrowPath = new Path();
+    private final RectF mArcBounds = new RectF();
+    private final int mHeight;
+    private final float mRadius;
+
+    private int mCriticalPointState; // 0:未到达临界点; 1:onDragCriticalPoint(true); -1:onDragCriticalPoint(false)
+    private boolean mRefreshing;
+    private long mRefreshStartTime = -1;
+    private boolean mDrawnArmed;
+    private long mFlipStartTime = -1;
+
+    public SpinnerRefreshDrawable(Context context) {
+        float density = context.getResources().getDisplayMetrics().density;
+        mHeight = (int) (DEFAULT_HEIGHT * density);
+        mRadius = SPINNER_RADIUS * density;
+
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeWidth(STROKE_WIDTH * density);
+        mPaint.setStrokeCap(Paint.Cap.ROUND);
+        mPaint.setStrokeJoin(Paint.Join.ROUND);
+        mPaint.setColor(0xFF666666);
+
+        // 以(0, 0)为中心向下的箭头
+        float headSize = mRadius * 0.5f;
+        mArrowPath.moveTo(0, -mRadius);
+        mArrowPath.lineTo(0, mRadius);
+        mArrowPath.moveTo(-headSize, mRadius - headSize);
+        mArrowPath.lineTo(0, mRadius);
+        mArrowPath.lineTo(headSize, mRadius - headSize);
+    }
+
+    public void setColor(int color) {
+        mPaint.setColor(color);
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public void onDragReady() {
+        mCriticalPointState = 0;
+    }
+
+    @Override
+    public void onDragCriticalPoint(boolean pullDown) {
+        mCriticalPointState = pullDown ? 1 : -1;
+    }
+
+    @Override
+    public void onDragStartAnim() {
+        mRefreshing = true;
+        mRefreshStartTime = -1;
+    }
+
+    @Override
+    public void onDragFinishAnim() {
+        mRefreshing = false;
+        mCriticalPointState = 0;
+    }
+
+    @Override
+    public void onRefreshFailed() {
+        mRefreshing = false;
+        mCriticalPointState = 0;
+    }
+
+    @Override
+    public boolean draw(Canvas canvas, int width, int exposedHeight, boolean footer, long drawingTime) {
+        // 图形贴着内容View的一侧, 露出不足时居中
+        float size = Math.min(exposedHeight, mHeight);
+        float centerX = width / 2f;
+        float centerY = footer ? size / 2f : exposedHeight - size / 2f;
+
+        if(mRefreshing) {
+            if(mRefreshStartTime < 0) {
+                mRefreshStartTime = drawingTime;
+            }
+            float degrees = (drawingTime - mRefreshStartTime) % ROTATE_DURATION * 360f / ROTATE_DURATION;
+            mArcBounds.set(centerX - mRadius, centerY - mRadius, centerX + mRadius, centerY + mRadius);
+            canvas.drawArc(mArcBounds, degrees, 270f, false, mPaint);
+            return true;
+        }
+
+        boolean armed = footer ? mCriticalPointState < 0 : mCriticalPointState > 0;
+        if(armed != mDrawnArmed) {
+            mDrawnArmed = armed;
+            mFlipStartTime = drawingTime;
+        }
+        float fraction = mFlipStartTime < 0 ? 1f : Math.min(1f, (drawingTime - mFlipStartTime) / (float) FLIP_DURATION);
+        float degrees = (armed ? fraction : 1f - fraction) * 180f;
+        if(footer) {
+            // footer的箭头向上
+            degrees += 180f;
+        }
+
+        int saveCount = canvas.save();
+        canvas.translate(centerX, centerY);
+        canvas.rotate(degrees);
+        canvas.drawPath(mArrowPath, mPaint);
+        canvas.restoreToCount(saveCount);
+        return fraction < 1f;
+    }
+}
@@ -0,0 +1,178 @@
+package com.wiikzz.library.refresh;
+
+import android.view.animation.AnimationUtils;
+
+/**
+ * Created by wiikii on 16/9/20.
+ * Copyright (C) 2014 wiikii. All rights reserved.
+ *
+ * 阻尼弹簧动画(质量为1), 按帧时间推进, 用法与{@link OverScroller}一致:
+ * 每帧调用{@link #computeScrollOffset()}后通过{@link #getCurrY()}取得当前位置.
+ * 动画过程中可以随时更换目标位置, 速度保持连续.
+ */
+public class SpringScroller {
+    public static final float STIFFNESS_HIGH = 10000f;
+    public static final float STIFFNESS_MEDIUM = 1500f;
+    public static final float STIFFNESS_LOW = 200f;
+
+    public static final float DAMPING_RATIO_CRITICAL = 1f; // 临界阻尼, 不越过目标位置
+    public static final float DAMPING_RATIO_MEDIUM_BOUNCY = 0.5f;
+    public static final float DAMPING_RATIO_LOW_BOUNCY = 0.75f;
+
+    private static final float POSITION_THRESHOLD = 0.5f; // 像素
+    private static final float VELOCITY_THRESHOLD = 20f; // 像素/秒
+
+    private final float mNaturalFreq;
+    private final float mDampingRatio;
+
+    private float mPosition;
+    private float mVelocity; // 像素/秒
+    private int mFinalPosition;
+    private long mLastFrameTime;
+    private boolean mFinished = true;
+
+    /**
+     * @param stiffness 弹簧刚度, 越大回弹越快
+     * @param dampingRatio 阻尼比, 必须大于0, 1为临界阻尼, 小于1会越过目标位置后回弹
+     */
+    public SpringScroller(float stiffness, float dampingRatio) {
+        if(stiffness <= 0) {
+            throw new IllegalArgumentException("Spring stiffness must be positive");
+        }
+        if(dampingRatio <= 0) {
+            // 无阻尼时弹簧永远不会停下
+            throw new IllegalArgumentException("Damping ratio must be positive");
+        }
+        mNaturalFreq = (float) Math.sqrt(stiffness);
+        mDampingRatio = dampingRatio;
+    }
+
+    /**
+     * 从start以初始速度velocity弹向finalPosition
+     * @param velocity 初始速度, 像素/秒
+     */
+    public void startSpring(int start, int finalPosition, float velocity) {
+        startSpring(start, finalPosition, velocity, AnimationUtils.currentAnimationTimeMillis());
+    }
+
+    void startSpring(int start, int finalPosition, float velocity, long frameTime) {
+        mPosition = start;
+        mVelocity = velocity;
+        mFinalPosition = finalPosition;
+        mLastFrameTime = frameTime;
+        mFinished = false;
+    }
+
+    /**
+     * 保持当前位置与速度, 改为弹向新的目标位置
+     */
+    public void retarget(int finalPosition) {
+        if(mFinished) {
+            startSpring(Math.round(mPosition), finalPosition, 0f);
+        } else {
+            mFinalPosition = finalPosition;
+        }
+    }
+
+    /**
+     * 按距上一帧经过的时间推进动画
+     * @return 动画未结束时返回true
+     */
+    public boolean computeScrollOffset() {
+        if(mFinished) {
+            return false;
+        }
+        return computeScrollOffset(AnimationUtils.currentAnimationTimeMillis());
+    }
+
+    // frameTime为当前帧的时间(毫秒)
+    boolean computeScrollOffset(long frameTime) {
+        if(mFinished) {
+            return false;
+        }
+
+        float deltaTime = (frameTime - mLastFrameTime) / 1000f;
+        if(deltaTime <= 0) {
+            return true;
+        }
+        mLastFrameTime = frameTime;
+
+        step(deltaTime);
+        if(Math.abs(mPosition - mFinalPosition) < POSITION_THRESHOLD
+                && Math.abs(mVelocity) < VELOCITY_THRESHOLD) {
+            abortAnimation();
+        }
+        return true;
+    }
+
+    // 弹簧运动方程的解析解, 任意步长都是精确的
+    private void step(float t) {
+        float x0 = mPosition - mFinalPosition;
+        float v0 = mVelocity;
+        float w0 = mNaturalFreq;
+        float zeta = mDampingRatio;
+        float x, v;
+
+        if(zeta < 1f) { // 欠阻尼
+            float a = zeta * w0;
+            float wd = w0 * (float) Math.sqrt(1f - zeta * zeta);
+            float b = (v0 + a * x0) / wd;
+            float decay = (float) Math.exp(-a * t);
+            float cos = (float) Math.cos(wd * t);
+            float sin = (float) Math.sin(wd * t);
+            x = decay * (x0 * cos + b * sin);
+            v = decay * ((wd * b - a * x0) * cos - (a * b + wd * x0) * sin);
+        } else if(zeta == 1f) { // 临界阻尼
+            float b = v0 + w0 * x0;
+            float decay = (float) Math.exp(-w0 * t);
+            x = decay * (x0 + b * t);
+            v = decay * (b - w0 * (x0 + b * t));
+        } else { // 过阻尼
+            float root = (float) Math.sqrt(zeta * zeta - 1f);
+            float r1 = -w0 * (zeta - root);
+            float r2 = -w0 * (zeta + root);
+            float c2 = (v0 - r1 * x0) / (r2 - r1);
+            float c1 = x0 - c2;
+            float e1 = (float) Math.exp(r1 * t);
+            float e2 = (float) Math.exp(r2 * t);
+            x = c1 * e1 + c2 * e2;
+            v = c1 * r1 * e1 + c2 * r2 * e2;
+        }
+
+        mPosition = mFinalPosition + x;
+        mVelocity = v;
+    }
+
+    /**
+     * 停止动画并直接移动到目标位置
+     */
+    public void abortAnimation() {
+        mPosition = mFinalPosition;
+        mVelocity = 0f;
+        mFinished = true;
+    }
+
+    /**
+     * 停止动画, 停留在当前位置
+     */
+    public void forceFinished() {
+        mVelocity = 0f;
+        mFinished = true;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    public int getCurrY() {
+        return Math.round(mPosition);
+    }
+
+    public int getFinalY() {
+        return mFinalPosition;
+    }
+
+    public float getCurrVelocity() {
+        return mVelocity;
+    }
+}
@@ -0,0 +1,84 @@
+package com.wiikzz.library.refresh;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by wiikii on 16/9/26.
+ * Copyright (C) 2014 wiikii. All rights reserved.
+ */
+public class DragResistanceTest {
+    private static final float DELTA = 1e-5f;
+
+    @Test
+    public void linear_decreasesToZeroAtMax() throws Exception {
+        DragResistance resistance = new DragResistance.Linear(0.5f);
+        assertEquals(0.5f, resistance.getResistance(0f, 600), DELTA);
+        assertEquals(0.25f, resistance.getResistance(300f, 600), DELTA);
+        assertEquals(0f, resistance.getResistance(600f, 600), DELTA);
+    }
+
+    @Test
+    public void exponential_decaysFromRatio() throws Exception {
+        DragResistance resistance = new DragResistance.Exponential(0.8f, 2f);
+        assertEquals(0.8f, resistance.getResistance(0f, 600), DELTA);
+        assertEquals(0.8f * (float) Math.exp(-2f), resistance.getResistance(600f, 600), DELTA);
+    }
+
+    @Test
+    public void lookupTable_interpolatesBetweenEntries() throws Exception {
+        DragResistance resistance = new DragResistance.LookupTable(new float[] {0.6f, 0.4f, 0f});
+        assertEquals(0.6f, resistance.getResistance(0f, 600), DELTA);
+        assertEquals(0.5f, resistance.getResistance(150f, 600), DELTA);
+        assertEquals(0.4f, resistance.getResistance(300f, 600), DELTA);
+        assertEquals(0.2f, resistance.getResistance(450f, 600), DELTA);
+        assertEquals(0f, resistance.getResistance(600f, 600), DELTA);
+    }
+
+    @Test
+    public void lookupTable_clampsOutsideRange() throws Exception {
+        DragResistance resistance = new DragResistance.LookupTable(new float[] {0.6f, 0.4f, 0f});
+        assertEquals(0.6f, resistance.getResistance(-10f, 600), DELTA);
+        assertEquals(0f, resistance.getResistance(700f, 600), DELTA);
+    }
+
+    @Test
+    public void lookupTable_copiesTable() throws Exception {
+        float[] table = {0.6f, 0.2f};
+        DragResistance resistance = new DragResistance.LookupTable(table);
+        table[0] = 1f;
+        assertEquals(0.6f, resistance.getResistance(0f, 600), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lookupTable_rejectsSingleValue() throws Exception {
+        new DragResistance.LookupTable(new float[] {0.5f});
+    }
+
+    @Test
+    public void dampedDistance_clampsExactlyToMax() throws Exception {
+        DragResistance resistance = new DragResistance.LookupTable(new float[] {1f, 1f});
+        assertEquals(600f, RefreshLayout.getDampedDragDistance(resistance, 590f, 100f, 600), 0f);
+        assertEquals(600f, RefreshLayout.getDampedDragDistance(resistance, 600f, 100f, 600), 0f);
+    }
+
+    @Test
+    public void dampedDistance_neverGoesNegative() throws Exception {
+        DragResistance resistance = new DragResistance.Linear(1f);
+        assertEquals(0f, RefreshLayout.getDampedDragDistance(resistance, 10f, -100f, 600), 0f);
+    }
+
+    @Test
+    public void dampedDistance_canPushBackFromMax() throws Exception {
+        // 最大距离处阻尼系数为0, 往回推时仍按最小系数移动
+        DragResistance resistance = new DragResistance.Linear(0.5f);
+        assertEquals(590f, RefreshLayout.getDampedDragDistance(resistance, 600f, -100f, 600), DELTA);
+    }
+
+    @Test
+    public void dampedDistance_zeroWithoutMax() throws Exception {
+        DragResistance resistance = new DragResistance.Linear();
+        assertEquals(0f, RefreshLayout.getDampedDragDistance(resistance, 0f, 100f, 0), 0f);
+    }
+}
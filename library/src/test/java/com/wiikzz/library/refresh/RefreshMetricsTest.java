@@ -0,0 +1,86 @@
+package com.wiikzz.library.refresh;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by wiikii on 16/9/26.
+ * Copyright (C) 2014 wiikii. All rights reserved.
+ */
+public class RefreshMetricsTest {
+
+    @Test
+    public void recentFrames_keepRecordOrder() throws Exception {
+        RefreshMetrics metrics = new RefreshMetrics();
+        for(int index = 0; index < 10; index++) {
+            metrics.recordFrame(index);
+        }
+        assertEquals(10, metrics.getRecentFrameCount());
+        assertEquals(0, metrics.getRecentFrameTime(0));
+        assertEquals(9, metrics.getRecentFrameTime(9));
+    }
+
+    @Test
+    public void recentFrames_dropOldestWhenFull() throws Exception {
+        RefreshMetrics metrics = new RefreshMetrics();
+        for(int index = 0; index < 130; index++) {
+            metrics.recordFrame(index);
+        }
+        assertEquals(130, metrics.getFrameCount());
+        assertEquals(120, metrics.getRecentFrameCount());
+        assertEquals(10, metrics.getRecentFrameTime(0));
+        assertEquals(129, metrics.getRecentFrameTime(119));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void recentFrames_rejectsIndexPastCount() throws Exception {
+        RefreshMetrics metrics = new RefreshMetrics();
+        metrics.recordFrame(1);
+        metrics.getRecentFrameTime(1);
+    }
+
+    @Test
+    public void jank_onlyAboveOneAndHalfBudget() throws Exception {
+        RefreshMetrics metrics = new RefreshMetrics();
+        metrics.setFrameBudget(10);
+        metrics.recordFrame(10);
+        metrics.recordFrame(15);
+        assertEquals(0, metrics.getJankFrameCount());
+        metrics.recordFrame(16);
+        assertEquals(1, metrics.getJankFrameCount());
+        assertEquals(16, metrics.getMaxFrameTime());
+    }
+
+    @Test
+    public void phases_measuredFromFirstRelease() throws Exception {
+        RefreshMetrics metrics = new RefreshMetrics();
+        metrics.markRefresh(50);
+        assertEquals(-1, metrics.getReleaseToRefreshTime());
+
+        metrics.markRelease(100);
+        metrics.markRelease(200);
+        metrics.markRefresh(150);
+        metrics.markRefresh(300);
+        metrics.markComplete(400);
+        metrics.markFinish(500);
+        assertEquals(50, metrics.getReleaseToRefreshTime());
+        assertEquals(300, metrics.getReleaseToCompleteTime());
+        assertEquals(400, metrics.getReleaseToFinishTime());
+    }
+
+    @Test
+    public void reset_clearsEverything() throws Exception {
+        RefreshMetrics metrics = new RefreshMetrics();
+        metrics.setFrameBudget(10);
+        metrics.recordFrame(20);
+        metrics.markRelease(100);
+        metrics.markFinish(200);
+        metrics.reset();
+        assertEquals(0, metrics.getFrameCount());
+        assertEquals(0, metrics.getJankFrameCount());
+        assertEquals(0, metrics.getRecentFrameCount());
+        assertEquals(-1, metrics.getReleaseToFinishTime());
+        assertEquals(10, metrics.getFrameBudget());
+    }
+}
@@ -0,0 +1,108 @@
+package com.wiikzz.library.refresh;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by wiikii on 16/9/26.
+ * Copyright (C) 2014 wiikii. All rights reserved.
+ */
+public class SpringScrollerTest {
+    private static final long FRAME_TIME = 16L;
+    private static final int MAX_FRAMES = 1000;
+
+    // 逐帧推进直到动画结束, 返回经过的最大位置
+    private static int runToEnd(SpringScroller scroller, long startTime) {
+        int maxPosition = scroller.getCurrY();
+        long frameTime = startTime;
+        for(int frame = 0; frame < MAX_FRAMES; frame++) {
+            frameTime += FRAME_TIME;
+            if(!scroller.computeScrollOffset(frameTime)) {
+                return maxPosition;
+            }
+            maxPosition = Math.max(maxPosition, scroller.getCurrY());
+        }
+        fail("spring did not settle");
+        return maxPosition;
+    }
+
+    @Test
+    public void criticallyDamped_settlesWithoutOvershoot() throws Exception {
+        SpringScroller scroller = new SpringScroller(SpringScroller.STIFFNESS_MEDIUM, SpringScroller.DAMPING_RATIO_CRITICAL);
+        scroller.startSpring(0, 100, 0f, 0L);
+        int maxPosition = runToEnd(scroller, 0L);
+        assertTrue(scroller.isFinished());
+        assertEquals(100, scroller.getCurrY());
+        assertTrue("overshoot " + maxPosition, maxPosition <= 100);
+    }
+
+    @Test
+    public void underDamped_overshootsThenSettles() throws Exception {
+        SpringScroller scroller = new SpringScroller(SpringScroller.STIFFNESS_MEDIUM, SpringScroller.DAMPING_RATIO_MEDIUM_BOUNCY);
+        scroller.startSpring(0, 100, 0f, 0L);
+        int maxPosition = runToEnd(scroller, 0L);
+        assertEquals(100, scroller.getCurrY());
+        assertTrue(maxPosition > 100);
+    }
+
+    @Test
+    public void overDamped_settles() throws Exception {
+        SpringScroller scroller = new SpringScroller(SpringScroller.STIFFNESS_LOW, 2f);
+        scroller.startSpring(100, 0, -500f, 0L);
+        runToEnd(scroller, 0L);
+        assertEquals(0, scroller.getCurrY());
+    }
+
+    @Test
+    public void retarget_keepsVelocityAndReachesNewTarget() throws Exception {
+        SpringScroller scroller = new SpringScroller(SpringScroller.STIFFNESS_LOW, SpringScroller.DAMPING_RATIO_CRITICAL);
+        scroller.startSpring(0, 100, 0f, 0L);
+        long frameTime = 0L;
+        for(int frame = 0; frame < 5; frame++) {
+            frameTime += FRAME_TIME;
+            scroller.computeScrollOffset(frameTime);
+        }
+        float velocity = scroller.getCurrVelocity();
+        int position = scroller.getCurrY();
+        assertTrue(velocity > 0);
+
+        scroller.retarget(200);
+        assertEquals(velocity, scroller.getCurrVelocity(), 0f);
+        assertEquals(position, scroller.getCurrY());
+        assertEquals(200, scroller.getFinalY());
+
+        runToEnd(scroller, frameTime);
+        assertEquals(200, scroller.getCurrY());
+    }
+
+    @Test
+    public void sameFrameTime_doesNotMove() throws Exception {
+        SpringScroller scroller = new SpringScroller(SpringScroller.STIFFNESS_MEDIUM, SpringScroller.DAMPING_RATIO_CRITICAL);
+        scroller.startSpring(0, 100, 0f, 10L);
+        assertTrue(scroller.computeScrollOffset(10L));
+        assertEquals(0, scroller.getCurrY());
+    }
+
+    @Test
+    public void forceFinished_staysAtCurrentPosition() throws Exception {
+        SpringScroller scroller = new SpringScroller(SpringScroller.STIFFNESS_MEDIUM, SpringScroller.DAMPING_RATIO_CRITICAL);
+        scroller.startSpring(0, 100, 0f, 0L);
+        scroller.computeScrollOffset(FRAME_TIME);
+        int position = scroller.getCurrY();
+        scroller.forceFinished();
+        assertTrue(scroller.isFinished());
+        assertFalse(scroller.computeScrollOffset(FRAME_TIME * 2));
+        assertEquals(position, scroller.getCurrY());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroDamping() throws Exception {
+        new SpringScroller(SpringScroller.STIFFNESS_MEDIUM, 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroStiffness() throws Exception {
+        new SpringScroller(0f, SpringScroller.DAMPING_RATIO_CRITICAL);
+    }
+}